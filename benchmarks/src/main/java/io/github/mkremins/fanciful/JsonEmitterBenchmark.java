@@ -0,0 +1,80 @@
+package io.github.mkremins.fanciful;
+
+import com.google.gson.stream.JsonWriter;
+import io.github.mkremins.fanciful.benchmarks.Workloads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link JsonEmitter} with Gson's {@link JsonWriter}, writing the same message into the same sinks.
+ * The messages are never exported, so no cached JSON is involved and every part is serialized in full.
+ * <p>This benchmark lives in the library package, since the emitter is internal.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonEmitterBenchmark {
+
+    @Param({"SHORT", "LONG", "TOOLTIPS"})
+    public Workloads workload;
+
+    private FancyMessage message;
+    private StringBuilderWriter chars;
+    private ByteBuffer bytes;
+
+    @Setup
+    public void setup() {
+        message = workload.build();
+        chars = new StringBuilderWriter(1 << 16);
+        bytes = ByteBuffer.allocate(1 << 16);
+    }
+
+    @Benchmark
+    public String gsonChars() throws IOException {
+        chars.reset();
+        JsonWriter writer = new JsonWriter(chars);
+        message.writeJson(writer);
+        writer.close();
+        return chars.toString();
+    }
+
+    @Benchmark
+    public String emitterChars() throws IOException {
+        chars.reset();
+        message.writeJson(JsonEmitter.to(chars.getBuilder()));
+        return chars.toString();
+    }
+
+    @Benchmark
+    public int gsonUtf8() throws IOException {
+        bytes.clear();
+        JsonWriter writer = new JsonWriter(Utf8Writer.to(bytes));
+        message.writeJson(writer);
+        writer.close();
+        return bytes.position();
+    }
+
+    @Benchmark
+    public int emitterUtf8() throws IOException {
+        bytes.clear();
+        message.writeJson(JsonEmitter.to(Utf8Writer.to(bytes)));
+        return bytes.position();
+    }
+
+}
@@ -0,0 +1,98 @@
+package io.github.mkremins.fanciful.benchmarks;
+
+import io.github.mkremins.fanciful.FancyMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the binary wire format with JSON, encoding into and decoding from byte arrays. The encoded message is never
+ * exported, so the JSON encoding does not benefit from cached output.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryCodecBenchmark {
+
+    @Param({"SHORT", "LONG", "TOOLTIPS"})
+    public Workloads workload;
+
+    private FancyMessage message;
+    private ByteArrayOutputStream buffer;
+    private byte[] json;
+    private byte[] binary;
+    private byte[] deduplicated;
+
+    @Setup
+    public void setup() throws IOException {
+        message = workload.build();
+        buffer = new ByteArrayOutputStream(1 << 16);
+        json = workload.build().exportToJson().getBytes(StandardCharsets.UTF_8);
+        message.writeBinary(new DataOutputStream(buffer));
+        binary = buffer.toByteArray();
+        buffer.reset();
+        message.writeBinary(new DataOutputStream(buffer), true);
+        deduplicated = buffer.toByteArray();
+    }
+
+    @Benchmark
+    public int writeJson() throws IOException {
+        buffer.reset();
+        message.writeJson(buffer);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int writeBinary() throws IOException {
+        buffer.reset();
+        message.writeBinary(new DataOutputStream(buffer));
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int writeBinaryDeduplicated() throws IOException {
+        buffer.reset();
+        message.writeBinary(new DataOutputStream(buffer), true);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public FancyMessage readJson() {
+        return FancyMessage.fromJson(new String(json, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public FancyMessage readJsonDeduplicated() {
+        return FancyMessage.fromJson(new String(json, StandardCharsets.UTF_8), true);
+    }
+
+    @Benchmark
+    public FancyMessage readBinary() throws IOException {
+        return FancyMessage.readBinary(new DataInputStream(new ByteArrayInputStream(binary)));
+    }
+
+    @Benchmark
+    public FancyMessage readBinaryDeduplicated() throws IOException {
+        return FancyMessage.readBinary(new DataInputStream(new ByteArrayInputStream(deduplicated)));
+    }
+
+}
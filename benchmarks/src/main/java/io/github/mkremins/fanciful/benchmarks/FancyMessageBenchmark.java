@@ -0,0 +1,82 @@
+package io.github.mkremins.fanciful.benchmarks;
+
+import com.google.gson.stream.JsonWriter;
+import io.github.mkremins.fanciful.FancyMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building, serializing, parsing and copying messages of each {@link Workloads workload}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FancyMessageBenchmark {
+
+    @Param({"SHORT", "LONG", "TOOLTIPS"})
+    public Workloads workload;
+
+    private FancyMessage message;
+    private String json;
+
+    @Setup
+    public void setup() {
+        message = workload.build();
+        json = message.exportToJson();
+    }
+
+    /**
+     * Baseline for {@link #buildAndExport()}: only builds the message.
+     */
+    @Benchmark
+    public FancyMessage build() {
+        return workload.build();
+    }
+
+    /**
+     * Builds a message and exports it, as plugins do for every message they send.
+     */
+    @Benchmark
+    public String buildAndExport() {
+        return workload.build().exportToJson();
+    }
+
+    /**
+     * Serializes a prebuilt message through Gson's {@link JsonWriter}, bypassing any cached output.
+     */
+    @Benchmark
+    public String writeJson() throws IOException {
+        StringWriter string = new StringWriter();
+        JsonWriter writer = new JsonWriter(string);
+        message.writeJson(writer);
+        writer.close();
+        return string.toString();
+    }
+
+    @Benchmark
+    public FancyMessage fromJson() {
+        return FancyMessage.fromJson(json);
+    }
+
+    @Benchmark
+    public FancyMessage copy() {
+        return message.copy();
+    }
+
+}
@@ -0,0 +1,49 @@
+package io.github.mkremins.fanciful.benchmarks;
+
+import io.github.mkremins.fanciful.FancyMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares converting JSON into legacy text by parsing the message and flattening it with the direct transcoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonToLegacyBenchmark {
+
+    @Param({"SHORT", "LONG", "TOOLTIPS"})
+    public Workloads workload;
+
+    private String json;
+
+    @Setup
+    public void setup() {
+        json = workload.build().exportToJson();
+    }
+
+    @Benchmark
+    public String parseAndFlatten() {
+        return FancyMessage.fromJson(json).toOldMessageFormat();
+    }
+
+    @Benchmark
+    public String transcode() {
+        return FancyMessage.jsonToLegacyText(json);
+    }
+
+}
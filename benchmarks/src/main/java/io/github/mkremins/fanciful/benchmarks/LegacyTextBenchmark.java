@@ -0,0 +1,58 @@
+package io.github.mkremins.fanciful.benchmarks;
+
+import io.github.mkremins.fanciful.FancyMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks converting legacy text, full of color codes and links, into messages and JSON. The {@code UNBROKEN}
+ * shape joins all words of the text into one; the time per character should be the same for every length and shape.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LegacyTextBenchmark {
+
+    @Param({"160", "1000", "10000"})
+    public int length;
+
+    @Param({"CHAT", "UNBROKEN"})
+    public String shape;
+
+    private String legacy;
+
+    @Setup
+    public void setup() {
+        legacy = shape.equals("UNBROKEN") ? Workloads.unbrokenLegacyText(length) : Workloads.legacyText(length);
+    }
+
+    @Benchmark
+    public FancyMessage fromLegacyText() {
+        return FancyMessage.fromLegacyText(legacy);
+    }
+
+    @Benchmark
+    public String fromLegacyTextAndExport() {
+        return FancyMessage.fromLegacyText(legacy).exportToJson();
+    }
+
+    @Benchmark
+    public String legacyToJson() {
+        return FancyMessage.legacyToJson(legacy);
+    }
+
+}
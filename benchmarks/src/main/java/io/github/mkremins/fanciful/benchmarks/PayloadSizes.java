@@ -0,0 +1,55 @@
+package io.github.mkremins.fanciful.benchmarks;
+
+import io.github.mkremins.fanciful.FancyMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Prints the size of each {@link Workloads workload} in the JSON and binary wire formats, the size of its JSON after
+ * {@link FancyMessage#optimize()}, and the size of its {@linkplain FancyMessage#exportToCompactJson() compact JSON}.
+ * Run it with
+ * {@code java -cp benchmarks.jar io.github.mkremins.fanciful.benchmarks.PayloadSizes}.
+ */
+public final class PayloadSizes {
+
+    private PayloadSizes() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%-12s %8s %8s %7s %8s %7s %10s %7s %8s %7s%n", "Workload", "JSON", "Binary", "Ratio",
+                "Dedup", "Ratio", "Optimized", "Ratio", "Compact", "Ratio");
+        for (Workloads workload : Workloads.values()) {
+            FancyMessage message = workload.build();
+            int json = json(message);
+            int binary = binary(message, false);
+            int deduplicated = binary(message, true);
+            int optimized = json(message.copy().optimize());
+            int compact = message.exportToCompactJson().getBytes(StandardCharsets.UTF_8).length;
+            System.out.printf("%-12s %8d %8d %6.1f%% %8d %6.1f%% %10d %6.1f%% %8d %6.1f%%%n", workload, json,
+                    binary, 100.0 * binary / json, deduplicated, 100.0 * deduplicated / json,
+                    optimized, 100.0 * optimized / json, compact, 100.0 * compact / json);
+        }
+    }
+
+    /**
+     * @return The size of the UTF-8 encoded JSON representation of the message, in bytes.
+     */
+    static int json(FancyMessage message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeJson(out);
+        return out.size();
+    }
+
+    /**
+     * @return The size of the binary representation of the message, in bytes.
+     */
+    static int binary(FancyMessage message, boolean deduplicateStrings) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeBinary(new DataOutputStream(out), deduplicateStrings);
+        return out.size();
+    }
+
+}
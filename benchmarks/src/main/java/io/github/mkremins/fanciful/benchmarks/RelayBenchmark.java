@@ -0,0 +1,59 @@
+package io.github.mkremins.fanciful.benchmarks;
+
+import io.github.mkremins.fanciful.FancyMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures relaying a received message unchanged: decoding its UTF-8 encoded JSON into a message and writing the
+ * message out again, either fully parsed or through a lazy message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelayBenchmark {
+
+    @Param({"SHORT", "LONG", "TOOLTIPS"})
+    public Workloads workload;
+
+    private byte[] json;
+    private ByteArrayOutputStream buffer;
+
+    @Setup
+    public void setup() {
+        json = workload.build().exportToJson().getBytes(StandardCharsets.UTF_8);
+        buffer = new ByteArrayOutputStream(1 << 16);
+    }
+
+    @Benchmark
+    public int relayParsed() throws IOException {
+        buffer.reset();
+        FancyMessage.fromJson(new String(json, StandardCharsets.UTF_8)).writeJson(buffer);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int relayLazy() throws IOException {
+        buffer.reset();
+        FancyMessage.lazyFromJson(json).writeJson(buffer);
+        return buffer.size();
+    }
+
+}
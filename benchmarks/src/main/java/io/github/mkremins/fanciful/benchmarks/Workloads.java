@@ -0,0 +1,165 @@
+package io.github.mkremins.fanciful.benchmarks;
+
+import io.github.mkremins.fanciful.ChatColor;
+import io.github.mkremins.fanciful.FancyMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Realistic messages shared by the benchmarks.
+ */
+public enum Workloads {
+
+    /**
+     * A single chat line: a clickable player name followed by the chat message.
+     */
+    SHORT {
+        @Override
+        public FancyMessage build() {
+            return new FancyMessage("[")
+                    .color(ChatColor.DARK_GRAY)
+                    .then("Steve")
+                    .color(ChatColor.YELLOW)
+                    .suggest("/msg Steve ")
+                    .tooltip("Click to send a private message")
+                    .then("] ")
+                    .color(ChatColor.DARK_GRAY)
+                    .then("has anyone seen my diamonds? left them at spawn");
+        }
+    },
+
+    /**
+     * A help menu with one line per command, each with click and hover data.
+     */
+    LONG {
+        @Override
+        public FancyMessage build() {
+            FancyMessage message = new FancyMessage("----- ")
+                    .color(ChatColor.GOLD)
+                    .then("Help: Economy")
+                    .color(ChatColor.YELLOW)
+                    .style(ChatColor.BOLD)
+                    .then(" (page 1/3) -----")
+                    .color(ChatColor.GOLD);
+            for (int i = 0; i < 20; i++) {
+                message.then("\n/eco command" + i)
+                        .color(ChatColor.AQUA)
+                        .suggest("/eco command" + i + " ")
+                        .tooltip("Click to suggest /eco command" + i, "Permission: eco.command" + i)
+                        .then(" - ")
+                        .color(ChatColor.DARK_GRAY)
+                        .then("Does something useful with argument #" + i)
+                        .color(ChatColor.GRAY)
+                        .style(ChatColor.ITALIC);
+            }
+            return message.then("\n[Next page]")
+                    .color(ChatColor.GREEN)
+                    .style(ChatColor.UNDERLINE)
+                    .command("/eco help 2");
+        }
+    },
+
+    /**
+     * An item listing where every entry carries a multi-line formatted tooltip.
+     */
+    TOOLTIPS {
+        @Override
+        public FancyMessage build() {
+            FancyMessage message = new FancyMessage("Shop: ").color(ChatColor.GOLD);
+            for (int i = 0; i < 10; i++) {
+                List<FancyMessage> lines = new ArrayList<>();
+                lines.add(new FancyMessage("Enchanted Sword #" + i).color(ChatColor.AQUA).style(ChatColor.BOLD));
+                lines.add(new FancyMessage("Sharpness ").color(ChatColor.GRAY).then("V").color(ChatColor.GRAY));
+                lines.add(new FancyMessage("Unbreaking ").color(ChatColor.GRAY).then("III").color(ChatColor.GRAY));
+                lines.add(new FancyMessage(""));
+                lines.add(new FancyMessage("Price: ").color(ChatColor.GRAY).then(i * 100 + " coins").color(ChatColor.GOLD));
+                lines.add(new FancyMessage("Stock: ").color(ChatColor.GRAY).then(Integer.toString(i)).color(ChatColor.GREEN));
+                lines.add(new FancyMessage("Click to buy").color(ChatColor.YELLOW).style(ChatColor.ITALIC));
+                message.then("[Item " + i + "]")
+                        .color(ChatColor.AQUA)
+                        .command("/shop buy " + i)
+                        .formattedTooltip(lines)
+                        .then(" ");
+            }
+            return message;
+        }
+    },
+
+    /**
+     * A leaderboard with one line per player: a rank, a clickable player name and a score.
+     */
+    LEADERBOARD {
+        @Override
+        public FancyMessage build() {
+            FancyMessage message = new FancyMessage("Top Players")
+                    .color(ChatColor.GOLD)
+                    .style(ChatColor.BOLD)
+                    .then(" (this week)")
+                    .color(ChatColor.GRAY);
+            for (int i = 1; i <= 10; i++) {
+                message.then("\n#" + i + " ")
+                        .color(i <= 3 ? ChatColor.GOLD : ChatColor.GRAY)
+                        .style(ChatColor.BOLD)
+                        .then("Player" + i)
+                        .color(ChatColor.YELLOW)
+                        .command("/stats Player" + i)
+                        .tooltip("Click to view the stats of Player" + i)
+                        .then(" - ")
+                        .color(ChatColor.DARK_GRAY)
+                        .then(Integer.toString(10000 - i * 437))
+                        .color(ChatColor.GREEN)
+                        .then(" points")
+                        .color(ChatColor.GRAY);
+            }
+            return message;
+        }
+    };
+
+    /**
+     * A legacy chat line full of color codes, formatting codes and links.
+     */
+    public static final String LEGACY_LINE = "§6[§eServer§6] §aWelcome back §l§bSteve§r§a! "
+            + "Visit §9https://forum.example.com/threads/rules §aor §9www.example.org§a for the "
+            + "§nrules§r§a, and §c§ohave fun§r§a. ";
+
+    /**
+     * A colored legacy chat fragment without any spaces or links.
+     */
+    public static final String LEGACY_WORD = "§6[§eServer§6]§aWelcome_back_§l§bSteve§r§a!_";
+
+    /**
+     * Repeats the {@link #LEGACY_LINE} until the result reaches at least the specified length.
+     *
+     * @param length The minimum length of the result.
+     * @return The legacy text.
+     */
+    public static String legacyText(int length) {
+        return repeat(LEGACY_LINE, length);
+    }
+
+    /**
+     * Builds colored legacy text of the specified length without any spaces, so that the whole text forms one long
+     * word.
+     *
+     * @param length The minimum length of the result.
+     * @return The legacy text.
+     */
+    public static String unbrokenLegacyText(int length) {
+        return repeat(LEGACY_WORD, length);
+    }
+
+    private static String repeat(String text, int length) {
+        StringBuilder builder = new StringBuilder(length + text.length());
+        while (builder.length() < length) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return A new message of this workload.
+     */
+    public abstract FancyMessage build();
+
+}
@@ -0,0 +1,568 @@
+package io.github.mkremins.fanciful;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Internal class: Encodes messages in a compact binary format, for storage and for relaying between servers.
+ * <p>A message is encoded as a version byte and the length of the encoded message, followed by its parts. The
+ * length prefix lets the message be read from the input in one call, and decoded from memory. Each part is a flags
+ * byte telling which optional fields are present, a color byte, a style bit set byte and its text component, followed
+ * by the present fields.
+ * Known click and hover actions are encoded as a single byte. Integers are variable-length, using 7 bits per byte.
+ * Strings are prefixed with the number of bytes they are encoded to, and encoded char by char like UTF-8 with
+ * surrogates encoded individually, so that any Java string, even one with unpaired surrogates, is restored
+ * exactly.</p>
+ * <p>Optionally, repeated strings and repeated hover values or translation replacements are stored once. This is
+ * signalled by the {@link #DEDUPLICATED} bit of the version byte. Every string is then either a new literal, which is
+ * appended to a table of strings, or the index of an earlier literal in that table. A new literal may also start with
+ * a prefix of an earlier literal, such as the command prefix shared by the lines of a help menu, and only store the
+ * rest. Likewise, values are either written in full, or refer to an earlier equal value. The decoder shares the
+ * resulting instances between parts.</p>
+ * <p>Decoding a message yields a message equal to the encoded one, which has the same JSON representation.</p>
+ */
+final class BinaryCodec {
+    static final int VERSION = 1;
+    static final int DEDUPLICATED = 0x80;
+
+    private static final String[] CLICK_ACTIONS = {
+            "open_url", "open_file", "run_command", "suggest_command", "change_page"
+    };
+    private static final String[] HOVER_ACTIONS = {
+            "show_text", "show_achievement", "show_item", "show_entity"
+    };
+
+    // Flags of the optional fields of a part
+    private static final int CLICK = 1;
+    private static final int HOVER = 1 << 1;
+    private static final int INSERTION = 1 << 2;
+    private static final int REPLACEMENTS = 1 << 3;
+
+    /**
+     * The color byte of a part without a color, which is left out of its JSON representation.
+     */
+    private static final int NO_COLOR = 0xFF;
+
+    // Types of text components
+    private static final int RAW_TEXT = 0;
+    private static final int ARBITRARY_TEXT = 1;
+    private static final int COMPLEX_TEXT = 2;
+    private static final int JSON_TEXT = 3;
+    private static final int NO_TEXT = 4;
+
+    // Types of hover event values and translation replacements
+    private static final int STRING_VALUE = 0;
+    private static final int MESSAGE_VALUE = 1;
+    private static final int REFERENCED_VALUE = 2;
+
+    /**
+     * The minimum length of a prefix shared with an earlier string, below which the prefix is not worth referring to.
+     */
+    private static final int MIN_PREFIX = 4;
+
+    private BinaryCodec() {
+    }
+
+    static void write(FancyMessage message, DataOutput out, boolean deduplicate) throws IOException {
+        Encoder encoder = new Encoder(deduplicate);
+        encoder.message(message);
+        Encoder header = new Encoder(false);
+        header.put(deduplicate ? VERSION | DEDUPLICATED : VERSION);
+        header.varint(encoder.count);
+        out.write(header.buffer, 0, header.count);
+        out.write(encoder.buffer, 0, encoder.count);
+    }
+
+    static FancyMessage read(DataInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        boolean deduplicated = (version & DEDUPLICATED) != 0;
+        version &= ~DEDUPLICATED;
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary message version: " + version);
+        }
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            if (shift == 28) {
+                throw new IOException("Malformed length");
+            }
+        }
+        if (length < 0) {
+            throw new IOException("Malformed length");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        Decoder decoder = new Decoder(bytes, deduplicated);
+        FancyMessage message = decoder.message();
+        if (decoder.position != length) {
+            throw new IOException("Unexpected data after message");
+        }
+        return message;
+    }
+
+    /**
+     * Internal class: Encodes the parts of messages into a growable byte array.
+     */
+    static final class Encoder {
+        private final TreeMap<String, Integer> strings;
+        private final Map<JsonRepresentedObject, Integer> values;
+        private byte[] buffer = new byte[256];
+        private int count;
+
+        Encoder(boolean deduplicate) {
+            this.strings = deduplicate ? new TreeMap<String, Integer>() : null;
+            this.values = deduplicate ? new HashMap<JsonRepresentedObject, Integer>() : null;
+        }
+
+        void message(FancyMessage message) throws IOException {
+            List<MessagePart> parts = message.parts();
+            varint(parts.size());
+            for (MessagePart part : parts) {
+                part(part);
+            }
+        }
+
+        private void part(MessagePart part) throws IOException {
+            boolean click = part.hasClickEvent();
+            boolean hover = part.hasHoverEvent();
+            int flags = (click ? CLICK : 0)
+                    | (hover ? HOVER : 0)
+                    | (part.insertionData != null ? INSERTION : 0)
+                    | (!part.translationReplacements.isEmpty() ? REPLACEMENTS : 0);
+            put(flags);
+            put(part.color == null ? NO_COLOR : part.color.ordinal());
+            put(part.styles);
+
+            if (part.text == null) {
+                put(NO_TEXT);
+            } else {
+                part.text.writeBinary(this);
+            }
+            if (click) {
+                action(CLICK_ACTIONS, part.clickActionName);
+                string(part.clickActionData);
+            }
+            if (hover) {
+                action(HOVER_ACTIONS, part.hoverActionName);
+                value(part.hoverActionData);
+            }
+            if (part.insertionData != null) {
+                string(part.insertionData);
+            }
+            if (!part.translationReplacements.isEmpty()) {
+                varint(part.translationReplacements.size());
+                for (JsonRepresentedObject replacement : part.translationReplacements) {
+                    value(replacement);
+                }
+            }
+        }
+
+        void arbitraryText(String key, String value) throws IOException {
+            if (key.equals("text")) {
+                put(RAW_TEXT);
+            } else {
+                put(ARBITRARY_TEXT);
+                string(key);
+            }
+            string(value);
+        }
+
+        void complexText(String key, Map<String, String> value) throws IOException {
+            put(COMPLEX_TEXT);
+            string(key);
+            varint(value.size());
+            for (Map.Entry<String, String> entry : value.entrySet()) {
+                string(entry.getKey());
+                string(entry.getValue());
+            }
+        }
+
+        void jsonText(TextualComponent text) throws IOException {
+            StringBuilderWriter buffer = new StringBuilderWriter();
+            JsonWriter writer = new JsonWriter(buffer);
+            writer.beginObject();
+            text.writeJson(writer);
+            writer.endObject();
+            writer.close();
+            put(JSON_TEXT);
+            string(buffer.toString());
+        }
+
+        private void action(String[] known, String action) {
+            for (int i = 0; i < known.length; i++) {
+                if (known[i].equals(action)) {
+                    put(i + 1);
+                    return;
+                }
+            }
+            put(0);
+            string(action);
+        }
+
+        private void value(JsonRepresentedObject value) throws IOException {
+            if (values != null) {
+                Integer index = values.get(value);
+                if (index != null) {
+                    put(REFERENCED_VALUE);
+                    varint(index);
+                    return;
+                }
+            }
+            if (value instanceof JsonString) {
+                put(STRING_VALUE);
+                string(((JsonString) value).getValue());
+            } else if (value instanceof FancyMessage) {
+                put(MESSAGE_VALUE);
+                message((FancyMessage) value);
+            } else if (value instanceof FrozenMessage) {
+                put(MESSAGE_VALUE);
+                message(((FrozenMessage) value).thaw());
+            } else {
+                throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName());
+            }
+            if (values != null) {
+                // Registered after writing, so that values nested in this one are numbered first, as when decoding
+                values.put(value, values.size());
+            }
+        }
+
+        private void put(int b) {
+            if (count == buffer.length) {
+                buffer = Arrays.copyOf(buffer, count * 2);
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        private void varint(int value) {
+            while ((value & ~0x7F) != 0) {
+                put((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            put(value);
+        }
+
+        /**
+         * Writes a string, or {@code null}, prefixed with its encoded length plus one. When deduplicating, strings
+         * written before are replaced by their table index, shifted left by one bit and tagged with a set low bit.
+         * New strings have their length prefix shifted left by two bits instead; the second bit tells whether they
+         * start with a prefix of a string written before, in which case the index of that string and the length of
+         * the prefix follow.
+         */
+        private void string(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            if (strings == null) {
+                varint(encodedLength(value, 0) + 1);
+                chars(value, 0);
+                return;
+            }
+
+            Integer index = strings.get(value);
+            if (index != null) {
+                varint((index << 1) | 1);
+                return;
+            }
+            // Among the strings written before, those sharing the longest prefix are neighbours in sort order
+            Map.Entry<String, Integer> base = null;
+            int prefix = MIN_PREFIX - 1;
+            for (Map.Entry<String, Integer> neighbour : Arrays.asList(strings.lowerEntry(value), strings.higherEntry(value))) {
+                if (neighbour != null) {
+                    int common = commonPrefix(value, neighbour.getKey());
+                    if (common > prefix) {
+                        base = neighbour;
+                        prefix = common;
+                    }
+                }
+            }
+            strings.put(value, strings.size());
+
+            if (base == null) {
+                varint((encodedLength(value, 0) + 1) << 2);
+                chars(value, 0);
+            } else {
+                varint(((encodedLength(value, prefix) + 1) << 2) | 2);
+                varint(base.getValue());
+                varint(prefix);
+                chars(value, prefix);
+            }
+        }
+
+        private static int commonPrefix(String a, String b) {
+            int length = Math.min(a.length(), b.length());
+            int i = 0;
+            while (i < length && a.charAt(i) == b.charAt(i)) {
+                i++;
+            }
+            return i;
+        }
+
+        private static int encodedLength(String value, int start) {
+            int length = value.length() - start;
+            for (int i = start; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    length += c < 0x800 ? 1 : 2;
+                }
+            }
+            return length;
+        }
+
+        private void chars(String value, int start) {
+            int length = value.length();
+            if (buffer.length - count < (length - start) * 3) {
+                buffer = Arrays.copyOf(buffer, Math.max(count + (length - start) * 3, buffer.length * 2));
+            }
+            byte[] bytes = buffer;
+            int count = this.count;
+            for (int i = start; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    bytes[count++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[count++] = (byte) (0xC0 | (c >> 6));
+                    bytes[count++] = (byte) (0x80 | (c & 0x3F));
+                } else {
+                    bytes[count++] = (byte) (0xE0 | (c >> 12));
+                    bytes[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[count++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            this.count = count;
+        }
+    }
+
+    /**
+     * Internal class: Decodes the parts of messages from a byte array.
+     */
+    static final class Decoder {
+        private static final ChatColor[] COLORS = ChatColor.values();
+
+        private final byte[] bytes;
+        private final List<String> strings;
+        private final List<JsonRepresentedObject> values;
+        private int position;
+        private char[] chars = new char[64];
+
+        Decoder(byte[] bytes, boolean deduplicated) {
+            this.bytes = bytes;
+            this.strings = deduplicated ? new ArrayList<String>() : null;
+            this.values = deduplicated ? new ArrayList<JsonRepresentedObject>() : null;
+        }
+
+        FancyMessage message() throws IOException {
+            int count = varint();
+            List<MessagePart> parts = new ArrayList<>(Math.min(count, 64));
+            for (int i = 0; i < count; i++) {
+                parts.add(part());
+            }
+            return new FancyMessage(parts);
+        }
+
+        private MessagePart part() throws IOException {
+            MessagePart part = new MessagePart();
+            int flags = get();
+            int color = get();
+            if (color == NO_COLOR) {
+                part.color = null;
+            } else if (color >= COLORS.length) {
+                throw new IOException("Invalid color: " + color);
+            } else {
+                part.color = COLORS[color];
+            }
+            part.styles = get();
+
+            part.text = text();
+            if ((flags & CLICK) != 0) {
+                part.clickActionName = action(CLICK_ACTIONS);
+                part.clickActionData = string();
+            }
+            if ((flags & HOVER) != 0) {
+                part.hoverActionName = action(HOVER_ACTIONS);
+                part.hoverActionData = value();
+            }
+            if ((flags & INSERTION) != 0) {
+                part.insertionData = string();
+            }
+            if ((flags & REPLACEMENTS) != 0) {
+                int count = varint();
+                for (int i = 0; i < count; i++) {
+                    part.translationReplacements.add(value());
+                }
+            }
+            return part;
+        }
+
+        private TextualComponent text() throws IOException {
+            int type = get();
+            switch (type) {
+                case RAW_TEXT:
+                    return TextualComponent.arbitrary("text", string());
+                case ARBITRARY_TEXT:
+                    return TextualComponent.arbitrary(requiredString(), string());
+                case COMPLEX_TEXT:
+                    String key = requiredString();
+                    int count = varint();
+                    ImmutableMap.Builder<String, String> values = ImmutableMap.builder();
+                    for (int i = 0; i < count; i++) {
+                        values.put(requiredString(), requiredString());
+                    }
+                    return TextualComponent.complex(key, values.build());
+                case JSON_TEXT:
+                    JsonReader reader = new JsonReader(new StringReader(requiredString()));
+                    reader.beginObject();
+                    return TextualComponent.deserialize(reader.nextName(), reader);
+                case NO_TEXT:
+                    return null;
+                default:
+                    throw new IOException("Invalid text type: " + type);
+            }
+        }
+
+        private String action(String[] known) throws IOException {
+            int action = get();
+            if (action == 0) {
+                return string();
+            }
+            if (action > known.length) {
+                throw new IOException("Invalid action: " + action);
+            }
+            return known[action - 1];
+        }
+
+        private JsonRepresentedObject value() throws IOException {
+            int type = get();
+            JsonRepresentedObject value;
+            switch (type) {
+                case STRING_VALUE:
+                    value = new JsonString(string());
+                    break;
+                case MESSAGE_VALUE:
+                    value = message();
+                    break;
+                case REFERENCED_VALUE:
+                    if (values == null) {
+                        throw new IOException("Invalid value type: " + type);
+                    }
+                    return lookup(values, varint());
+                default:
+                    throw new IOException("Invalid value type: " + type);
+            }
+            if (values != null) {
+                values.add(value);
+            }
+            return value;
+        }
+
+        private int get() throws IOException {
+            if (position == bytes.length) {
+                throw new EOFException();
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        private int varint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = get();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new IOException("Malformed length");
+        }
+
+        private String requiredString() throws IOException {
+            String value = string();
+            if (value == null) {
+                throw new IOException("Unexpected null string");
+            }
+            return value;
+        }
+
+        private String string() throws IOException {
+            int count = varint();
+            String base = null;
+            int prefix = 0;
+            if (strings != null && count != 0) {
+                if ((count & 1) != 0) {
+                    return lookup(strings, count >>> 1);
+                }
+                boolean prefixed = (count & 2) != 0;
+                count >>>= 2;
+                if (prefixed) {
+                    base = lookup(strings, varint());
+                    prefix = varint();
+                    if (prefix > base.length()) {
+                        throw new IOException("Invalid prefix length: " + prefix);
+                    }
+                }
+            }
+            count--;
+            if (count < 0) {
+                return null;
+            }
+            if (count > bytes.length - position) {
+                throw new EOFException();
+            }
+            if (chars.length < prefix + count) {
+                chars = new char[Math.max(prefix + count, chars.length * 2)];
+            }
+            if (base != null) {
+                base.getChars(0, prefix, chars, 0);
+            }
+            byte[] bytes = this.bytes;
+            int end = position + count;
+
+            int length = prefix;
+            for (int i = position; i < end; ) {
+                int b = bytes[i++];
+                if (b >= 0) {
+                    chars[length++] = (char) b;
+                } else if ((b & 0xE0) == 0xC0 && i < end) {
+                    chars[length++] = (char) (((b & 0x1F) << 6) | (bytes[i++] & 0x3F));
+                } else if ((b & 0xF0) == 0xE0 && i + 1 < end) {
+                    chars[length++] = (char) (((b & 0x0F) << 12) | ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F));
+                } else {
+                    throw new IOException("Malformed string");
+                }
+            }
+            position = end;
+            String value = new String(chars, 0, length);
+            if (strings != null) {
+                strings.add(value);
+            }
+            return value;
+        }
+
+        private static <T> T lookup(List<T> table, int index) throws IOException {
+            if (index >= table.size()) {
+                throw new IOException("Invalid reference: " + index);
+            }
+            return table.get(index);
+        }
+    }
+
+}
@@ -1,9 +1,6 @@
 package io.github.mkremins.fanciful;
 
-import com.google.common.collect.ImmutableMap;
-
-import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Locale;
 
 /**
  * All supported color values for chat
@@ -26,25 +23,45 @@ public enum ChatColor {
     LIGHT_PURPLE('d'),
     YELLOW('e'),
     WHITE('f'),
-    MAGIC('k', true),
+    MAGIC('k', true, "obfuscated"),
     BOLD('l', true),
     STRIKETHROUGH('m', true),
-    UNDERLINE('n', true),
+    UNDERLINE('n', true, "underlined"),
     ITALIC('o', true),
     RESET('r');
 
     private final char code;
     private final boolean isFormat;
     private final String toString;
+    private final String jsonName;
+    /**
+     * The complete JSON property applying this value to a message part, preceded by a comma: {@code ,"color":"red"}
+     * for colors, {@code ,"bold":true} for formats.
+     */
+    final JsonEmitter.Token jsonToken;
+    /**
+     * The JSON property removing this format from a message part which would otherwise inherit it, preceded by a
+     * comma: {@code ,"bold":false}. {@code null} for colors.
+     */
+    final JsonEmitter.Token jsonFalseToken;
 
     ChatColor(char code) {
         this(code, false);
     }
 
     ChatColor(char code, boolean isFormat) {
+        this(code, isFormat, null);
+    }
+
+    ChatColor(char code, boolean isFormat, String jsonName) {
         this.code = code;
         this.isFormat = isFormat;
         this.toString = new String(new char[]{COLOR_CHAR, code});
+        this.jsonName = jsonName != null ? jsonName : name().toLowerCase(Locale.ROOT);
+        this.jsonToken = new JsonEmitter.Token(isFormat
+                ? ",\"" + this.jsonName + "\":true"
+                : ",\"color\":\"" + this.jsonName + "\"");
+        this.jsonFalseToken = isFormat ? new JsonEmitter.Token(",\"" + this.jsonName + "\":false") : null;
     }
 
     /**
@@ -56,6 +73,16 @@ public enum ChatColor {
         return code;
     }
 
+    /**
+     * Gets the name of this value in JSON messages: the value of the {@code color} property for colors, or the name
+     * of the boolean property for formats.
+     *
+     * @return The JSON name of this value
+     */
+    public String getJsonName() {
+        return jsonName;
+    }
+
     @Override
     public String toString() {
         return toString;
@@ -79,17 +106,30 @@ public enum ChatColor {
         return !isFormat && this != RESET;
     }
 
+    /**
+     * Gets the color named by the value of a JSON {@code color} property. Formats and {@link #RESET} are not colors,
+     * and leave the part in the default color.
+     *
+     * @param name The value of the {@code color} property.
+     * @return The color, or {@code null} if the value names a format or {@code reset}.
+     * @throws IllegalArgumentException If the value names no known color or format.
+     */
+    static ChatColor byJsonColorName(String name) {
+        ChatColor color = valueOf(name.toUpperCase(Locale.ROOT));
+        return color.isColor() ? color : null;
+    }
+
 
     public static final char COLOR_CHAR = '\u00A7';
-    private static final Pattern STRIP_COLOR_PATTERN = Pattern.compile("(?i)" + String.valueOf(COLOR_CHAR) + "[0-9A-FK-OR]");
-    private final static Map<Character, ChatColor> BY_CHAR;
+    /**
+     * The values indexed by their code, which are all ASCII characters.
+     */
+    private static final ChatColor[] BY_CHAR = new ChatColor[128];
 
     static {
-        ImmutableMap.Builder<Character, ChatColor> byChar = ImmutableMap.builder();
         for (ChatColor color : values()) {
-            byChar.put(color.code, color);
+            BY_CHAR[color.code] = color;
         }
-        BY_CHAR = byChar.build();
     }
 
     /**
@@ -99,7 +139,21 @@ public enum ChatColor {
      * @return Associative {@link ChatColor} with the given code, or null if it doesn't exist
      */
     public static ChatColor getByChar(char code) {
-        return BY_CHAR.get(code);
+        return code < BY_CHAR.length ? BY_CHAR[code] : null;
+    }
+
+    /**
+     * Gets the color represented by the specified color code, ignoring its case. This matches the way the client
+     * interprets legacy format codes.
+     *
+     * @param code Code to check
+     * @return Associative {@link ChatColor} with the given code, or null if it doesn't exist
+     */
+    public static ChatColor getByCharIgnoreCase(char code) {
+        if (code >= 'A' && code <= 'Z') {
+            code += 'a' - 'A';
+        }
+        return getByChar(code);
     }
 
     /**
@@ -112,17 +166,58 @@ public enum ChatColor {
         if (code == null) throw new NullPointerException("code");
         if (code.length() <= 0) throw new IllegalArgumentException("code must have 1 char");
 
-        return BY_CHAR.get(code.charAt(0));
+        return getByChar(code.charAt(0));
     }
 
     /**
      * Strips the given message of all color codes
      *
      * @param input String to strip of color
-     * @return A copy of the input string, without any coloring
+     * @return A copy of the input string, without any coloring, or the input string itself if it contains no color
+     * codes
      */
     public static String stripColor(final String input) {
         if (input == null) return null;
-        return STRIP_COLOR_PATTERN.matcher(input).replaceAll("");
+
+        int length = input.length();
+        int i = input.indexOf(COLOR_CHAR);
+        while (i >= 0 && !isColorCode(input, i)) {
+            i = input.indexOf(COLOR_CHAR, i + 1);
+        }
+        if (i < 0) {
+            return input;
+        }
+        StringBuilder result = new StringBuilder(length - 2);
+        result.append(input, 0, i);
+        return stripColor(input, i + 2, result).toString();
+    }
+
+    /**
+     * Strips the given message of all color codes, appending the result to the specified builder
+     *
+     * @param input Text to strip of color
+     * @param out   Builder which will receive the text without any coloring
+     * @return The builder
+     */
+    public static StringBuilder stripColor(final CharSequence input, final StringBuilder out) {
+        if (input == null) throw new NullPointerException("input");
+
+        return stripColor(input, 0, out);
+    }
+
+    private static StringBuilder stripColor(CharSequence input, int start, StringBuilder out) {
+        int length = input.length();
+        int runStart = start;
+        for (int i = start; i < length; i++) {
+            if (input.charAt(i) == COLOR_CHAR && isColorCode(input, i)) {
+                out.append(input, runStart, i);
+                runStart = ++i + 1;
+            }
+        }
+        return out.append(input, runStart, length);
+    }
+
+    private static boolean isColorCode(CharSequence input, int index) {
+        return index + 1 < input.length() && getByCharIgnoreCase(input.charAt(index + 1)) != null;
     }
-}
\ No newline at end of file
+}
@@ -1,23 +1,25 @@
 package io.github.mkremins.fanciful;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Represents a formattable message. Such messages can use elements such as colors, formatting codes, hover and click
@@ -27,177 +29,148 @@ import java.util.regex.Pattern;
  * pattern, allowing for method chaining. It is set up such that invocations of property-setting methods will affect the
  * current editing component, and a call to {@link #then()} or {@link #then(String)} will append a new editing component
  * to the end of the message, optionally initializing it with text. Further property-setting method calls will affect
- * that editing component. </p>
+ * that editing component. </p> <p> Instances are not thread-safe. To let other threads read a message while one thread
+ * keeps building it, the building thread calls {@link #publish()} whenever the message is ready to be seen, and readers
+ * call {@link #getPublished()}, which never blocks. </p>
  */
 public class FancyMessage implements JsonRepresentedObject, Iterable<MessagePart> {
-    private static final Pattern URL_PATTERN = Pattern.compile("^(?:(https?)://)?([-\\w_\\.]{2,}\\.[a-z]{2,4})(/\\S*)?$");
-    private static final JsonParser STRING_PARSER = new JsonParser();
 
+    /**
+     * Deserializes a message from its JSON representation, as produced by {@link #exportToJson()}.
+     *
+     * @param json The JSON representation of the message.
+     * @return The deserialized message.
+     * @throws com.google.gson.JsonParseException If the JSON is malformed.
+     */
     public static FancyMessage fromJson(String json) {
-        JsonObject data = STRING_PARSER.parse(json).getAsJsonObject();
-        JsonArray extra = data.getAsJsonArray("extra"); // Get the extra component
-
-        FancyMessage ret = new FancyMessage();
-        ret.messageParts.clear();
-
-        for (JsonElement mPrt : extra) {
-            MessagePart component = new MessagePart();
-            JsonObject messagePart = mPrt.getAsJsonObject();
-
-            for (Map.Entry<String, JsonElement> entry : messagePart.entrySet()) {
-
-                if (TextualComponent.isTextKey(entry.getKey())) {
-                    // The map mimics the YAML serialization, which has a "key" field and one or more "value" fields
-                    Map<String, String> map = new HashMap<>();
-                    map.put("key", entry.getKey());
-
-                    if (entry.getValue().isJsonPrimitive()) {
-                        map.put("value", entry.getValue().getAsString());
-                    } else {
-                        for (Map.Entry<String, JsonElement> e : entry.getValue().getAsJsonObject().entrySet()) {
-                            map.put("value." + e.getKey(), e.getValue().getAsString());
-                        }
-                    }
-                    component.text = TextualComponent.deserialize(map);
-
-                } else if (MessagePart.STYLES_TO_NAMES.inverse().containsKey(entry.getKey())) {
-                    if (entry.getValue().getAsBoolean()) {
-                        component.styles.add(MessagePart.STYLES_TO_NAMES.inverse().get(entry.getKey()));
-                    }
+        return JsonMessageParser.parse(json);
+    }
 
-                } else if (entry.getKey().equals("color")) {
-                    component.color = ChatColor.valueOf(entry.getValue().getAsString().toUpperCase());
-
-                } else if (entry.getKey().equals("clickEvent")) {
-                    JsonObject object = entry.getValue().getAsJsonObject();
-                    component.clickActionName = object.get("action").getAsString();
-                    component.clickActionData = object.get("value").getAsString();
-
-                } else if (entry.getKey().equals("hoverEvent")) {
-                    JsonObject object = entry.getValue().getAsJsonObject();
-                    component.hoverActionName = object.get("action").getAsString();
-                    if (object.get("value").isJsonPrimitive()) {
-                        // Assume string
-                        component.hoverActionData = new JsonString(object.get("value").getAsString());
-                    } else {
-                        // Assume composite type
-                        // The only composite type we currently store is another FancyMessage
-                        // Therefore, recursion time!
-                        component.hoverActionData = fromJson(object.get("value").toString() /* This should properly serialize the JSON object as a JSON string */);
-                    }
+    /**
+     * Deserializes a message from its JSON representation, optionally deduplicating the strings it contains. Equal
+     * strings, such as the commands and tooltip lines repeated across the lines of a help menu, are then represented
+     * by a single instance, which reduces the memory held by the message.
+     *
+     * @param json               The JSON representation of the message.
+     * @param deduplicateStrings Whether equal strings should share a single instance.
+     * @return The deserialized message.
+     * @throws com.google.gson.JsonParseException If the JSON is malformed.
+     */
+    public static FancyMessage fromJson(String json, boolean deduplicateStrings) {
+        return JsonMessageParser.parse(json, deduplicateStrings);
+    }
 
-                } else if (entry.getKey().equals("insertion")) {
-                    component.insertionData = entry.getValue().getAsString();
-
-                } else if (entry.getKey().equals("with")) {
-                    for (JsonElement object : entry.getValue().getAsJsonArray()) {
-                        if (object.isJsonPrimitive()) {
-                            component.translationReplacements.add(new JsonString(object.getAsString()));
-                        } else {
-                            // Only composite type stored in this array is - again - FancyMessages
-                            // Recurse within this function to parse this as a translation replacement
-                            component.translationReplacements.add(fromJson(object.toString()));
-                        }
-                    }
-                }
-            }
-            ret.messageParts.add(component);
+    /**
+     * Wraps the JSON representation of a message without parsing it, for relaying messages which are usually passed on
+     * unchanged. The JSON is only parsed when the parts of the message are first accessed or modified; until then,
+     * {@link #exportToJson()} returns the specified text as is.
+     * <p>The JSON is not validated by this method. If it is malformed, the exception is thrown by the first method
+     * which needs to parse it.</p>
+     *
+     * @param json The JSON representation of the message.
+     * @return A message backed by the unparsed JSON.
+     */
+    public static FancyMessage lazyFromJson(String json) {
+        if (json == null) {
+            throw new IllegalArgumentException("json cannot be null");
         }
-        return ret;
+        FancyMessage message = new FancyMessage((List<MessagePart>) null);
+        message.jsonString = json;
+        return message;
     }
 
-    public static FancyMessage fromLegacyText(String message) {
-        List<MessagePart> components = new ArrayList<>();
-        StringBuilder builder = new StringBuilder();
-        MessagePart component = new MessagePart();
-        Matcher matcher = URL_PATTERN.matcher( message );
-
-        for (int i = 0; i < message.length(); i++) {
-            char c = message.charAt(i);
-            if (c == ChatColor.COLOR_CHAR) {
-                i++;
-                c = message.charAt(i);
-                if (c >= 'A' && c <= 'Z') {
-                    c += 32;
-                }
-                ChatColor format = ChatColor.getByChar(c);
-                if (format == null) {
-                    continue;
-                }
-
-                // copy style from previous component
-                if (builder.length() > 0) {
-                    MessagePart old = component;
-                    component = old.copy();
-                    old.text = TextualComponent.rawText(builder.toString());
-                    builder = new StringBuilder();
-                    components.add(old);
-                }
-
-                switch (format) {
-                    case BOLD:
-                    case ITALIC:
-                    case UNDERLINE:
-                    case STRIKETHROUGH:
-                    case MAGIC:
-                        component.styles.add(format);
-                        break;
-                    case RESET:
-                        format = ChatColor.WHITE;
-                    default:
-                        component = new MessagePart();
-                        component.color = format;
-                        break;
-                }
-                continue;
-            }
-
-            int pos = message.indexOf(' ', i);
-            if (pos == -1) {
-                pos = message.length();
-            }
-            if (matcher.region(i, pos).find()) { // Web link handling
-                if (builder.length() > 0) {
-                    MessagePart old = component;
-                    component = old.copy();
-                    old.text = TextualComponent.rawText(builder.toString());
-                    builder = new StringBuilder();
-                    components.add(old);
-                }
+    /**
+     * Wraps the UTF-8 encoded JSON representation of a message without decoding or parsing it, like
+     * {@link #lazyFromJson(String)}. Until the message is modified, {@link #writeJson(OutputStream)} and
+     * {@link #writeJsonUtf8(ByteBuffer)} copy the specified bytes as is.
+     * <p>The array is not copied, and must not be modified afterwards.</p>
+     *
+     * @param json The JSON representation of the message, encoded as UTF-8.
+     * @return A message backed by the unparsed JSON.
+     */
+    public static FancyMessage lazyFromJson(byte[] json) {
+        if (json == null) {
+            throw new IllegalArgumentException("json cannot be null");
+        }
+        FancyMessage message = new FancyMessage((List<MessagePart>) null);
+        message.jsonBytes = json;
+        return message;
+    }
 
-                MessagePart old = component;
-                component = old.copy();
-                String urlString = message.substring(i, pos);
-                component.text = TextualComponent.rawText(urlString);
+    /**
+     * Reads a message directly from a JSON stream in a single pass.
+     *
+     * @param reader The reader positioned at the start of the message.
+     * @return The deserialized message.
+     * @throws IOException If an error occurs while reading from the stream.
+     */
+    public static FancyMessage fromJson(JsonReader reader) throws IOException {
+        return JsonMessageParser.readMessage(reader);
+    }
 
-                component.clickActionName = "open_url";
-                component.clickActionData = urlString.startsWith("http") ? urlString : "http://" + urlString;
-                components.add(component);
+    /**
+     * Reads a message from the compact binary form written by {@link #writeBinary(DataOutput)}.
+     *
+     * @param in The input positioned at the start of the message.
+     * @return The decoded message.
+     * @throws IOException If an error occurs while reading from the input, or if the data is malformed.
+     */
+    public static FancyMessage readBinary(DataInput in) throws IOException {
+        return BinaryCodec.read(in);
+    }
 
-                i += pos - i - 1;
-                component = old;
-                continue;
-            }
-            builder.append(c);
-        }
-        if (builder.length() > 0) {
-            component.text = TextualComponent.rawText(builder.toString());
-            components.add(component);
-        }
+    /**
+     * Converts legacy text, which uses {@link ChatColor#COLOR_CHAR} format codes, into a message. Web links at the
+     * start of a word are made clickable.
+     *
+     * @param message The legacy text.
+     * @return The converted message.
+     */
+    public static FancyMessage fromLegacyText(String message) {
+        return LegacyText.toMessage(message);
+    }
 
-        // The client will crash if the array is empty
-        if (components.isEmpty()) {
-            components.add(new MessagePart(TextualComponent.rawText("")));
-        }
+    /**
+     * Converts legacy text directly into the JSON representation of the message {@link #fromLegacyText(String)} would
+     * build, as returned by its {@link #exportToJson()}. The JSON is written as the text is scanned, into the buffer of
+     * the {@link FancySerializer} bound to the calling thread, without building the message.
+     *
+     * @param message The legacy text.
+     * @return The JSON representation of the converted message.
+     */
+    public static String legacyToJson(CharSequence message) {
+        return FancySerializer.local().legacyToJson(message);
+    }
 
-        return new FancyMessage(components);
+    /**
+     * Converts the JSON representation of a message directly into legacy text, as returned by
+     * {@link #toOldMessageFormat()} on the deserialized message. The JSON is transcoded in a single pass, without
+     * building the message.
+     *
+     * @param json The JSON representation of the message.
+     * @return The legacy text of the message.
+     * @throws com.google.gson.JsonParseException If the JSON is malformed.
+     */
+    public static String jsonToLegacyText(String json) {
+        return LegacyTranscoder.jsonToLegacy(json);
     }
 
-    private List<MessagePart> messageParts;
+    private List<MessagePart> messageParts; // null until parsed, for a message created by lazyFromJson
+    private boolean shared; // Whether messageParts may also be referenced by a copy of this message
+    private int hash; // Cached hash code, 0 if not computed yet
     private String jsonString;
+    private byte[] jsonBytes; // UTF-8 encoded JSON this message was created from, until it is modified
     private boolean dirty;
+    private volatile FrozenMessage published;
 
-    private FancyMessage(List<MessagePart> parts) {
+    /**
+     * Creates a message from a mutable list of parts, or an unparsed message if the list is {@code null}. An empty
+     * list receives a single empty part, since the client will crash on an empty {@code extra} array.
+     */
+    FancyMessage(List<MessagePart> parts) {
+        if (parts != null && parts.isEmpty()) {
+            parts.add(new MessagePart(TextualComponent.rawText("")));
+        }
         this.messageParts = parts;
         jsonString = null;
         dirty = false;
@@ -218,18 +191,80 @@ public class FancyMessage implements JsonRepresentedObject, Iterable<MessagePart
         this((TextualComponent) null);
     }
 
+    /**
+     * Creates a copy of this message in constant time. The copy shares its message parts with this message until
+     * either of them is modified; only the parts which are edited afterwards are cloned.
+     *
+     * @return A copy of this message, which may be modified independently of this message.
+     */
     @Override
     public FancyMessage copy() {
-        FancyMessage instance = new FancyMessage();
-        instance.messageParts = new ArrayList<>(messageParts.size());
-        for (int i = 0; i < messageParts.size(); i++) {
-            instance.messageParts.add(i, messageParts.get(i).copy());
-        }
-        instance.dirty = false;
-        instance.jsonString = null;
+        FancyMessage instance = new FancyMessage(messageParts);
+        instance.shared = shared = true;
+        instance.dirty = dirty;
+        instance.jsonString = jsonString;
+        instance.jsonBytes = jsonBytes;
+        instance.hash = hash;
         return instance;
     }
 
+    /**
+     * Creates an immutable, thread-safe snapshot of this message. The snapshot holds its own copy of the message parts
+     * along with the pre-computed JSON representation, so it can be handed to asynchronous tasks and sent to any number
+     * of players without further copying. Later changes to this message do not affect the snapshot. A message
+     * created by {@link #lazyFromJson(String)} is parsed by this method.
+     *
+     * @return A snapshot of the current state of this message.
+     */
+    public FrozenMessage freeze() {
+        return new FrozenMessage(this);
+    }
+
+    /**
+     * Creates an immutable, thread-safe snapshot of this message like {@link #freeze()}, optionally
+     * {@linkplain #optimize() optimizing} the snapshot. This message itself is not optimized.
+     *
+     * @param optimize Whether the snapshot should be optimized.
+     * @return A snapshot of the current state of this message.
+     */
+    public FrozenMessage freeze(boolean optimize) {
+        return new FrozenMessage(optimize ? copy().optimize() : this);
+    }
+
+    /**
+     * Publishes the current state of this message to concurrent readers of {@link #getPublished()}. Only the thread
+     * which builds this message may call this method. Publishing is cheap: the snapshot shares the unchanged parts of
+     * this message, and reuses their cached JSON fragments.
+     *
+     * @return The published snapshot.
+     */
+    public FrozenMessage publish() {
+        FrozenMessage snapshot = freeze();
+        published = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Gets the snapshot last published by {@link #publish()}. This method may be called from any thread while another
+     * thread is modifying this message; it never blocks, and always returns a complete, consistent snapshot.
+     *
+     * @return The latest published snapshot, or {@code null} if this message was never published.
+     */
+    public FrozenMessage getPublished() {
+        return published;
+    }
+
+    /**
+     * Compiles this message into a template. Any {@code {name}} placeholders within the text, click data, insertion
+     * data or tooltips of this message can then be filled in by {@link MessageTemplate#render}, which only escapes and
+     * splices in the placeholder values instead of serializing the whole message again.
+     *
+     * @return The compiled template.
+     */
+    public MessageTemplate template() {
+        return MessageTemplate.compile(exportToJson());
+    }
+
     public FancyMessage apply(Consumer<FancyMessage> consumer) {
         consumer.accept(this);
         return this;
@@ -247,9 +282,7 @@ public class FancyMessage implements JsonRepresentedObject, Iterable<MessagePart
      * @return This builder instance.
      */
     public FancyMessage text(String text) {
-        MessagePart latest = latest();
-        latest.text = TextualComponent.rawText(text);
-        dirty = true;
+        edit().text = TextualComponent.rawText(text);
         return this;
     }
 
@@ -260,9 +293,7 @@ public class FancyMessage implements JsonRepresentedObject, Iterable<MessagePart
      * @return This builder instance.
      */
     public FancyMessage text(TextualComponent text) {
-        MessagePart latest = latest();
-        latest.text = text;
-        dirty = true;
+        edit().text = text;
         return this;
     }
 
@@ -278,8 +309,7 @@ public class FancyMessage implements JsonRepresentedObject, Iterable<MessagePart
         if (!color.isColor()) {
             throw new IllegalArgumentException(color.name() + " is not a color");
         }
-        latest().color = color;
-        dirty = true;
+        edit().color = color;
         return this;
     }
 
@@ -291,13 +321,14 @@ public class FancyMessage implements JsonRepresentedObject, Iterable<MessagePart
      * @throws IllegalArgumentException If any of the enumeration values in the array do not represent formatters.
      */
     public FancyMessage style(ChatColor... styles) {
+        int bits = 0;
         for (final ChatColor style : styles) {
             if (!style.isFormat()) {
                 throw new IllegalArgumentException(style.name() + " is not a style");
             }
+            bits |= MessagePart.styleBit(style);
         }
-        latest().styles.addAll(Arrays.asList(styles));
-        dirty = true;
+        edit().styles |= bits;
         return this;
     }
 
@@ -349,8 +380,7 @@ public class FancyMessage implements JsonRepresentedObject, Iterable<MessagePart
      * @return This builder instance.
      */
     public FancyMessage insert(String command) {
-        latest().insertionData = command;
-        dirty = true;
+        edit().insertionData = command;
         return this;
     }
 
@@ -436,14 +466,14 @@ public class FancyMessage implements JsonRepresentedObject, Iterable<MessagePart
      * @return This builder instance.
      */
     public FancyMessage formattedTooltip(FancyMessage text) {
-        for (MessagePart component : text.messageParts) {
+        for (MessagePart component : text.parts()) {
             if (component.clickActionData != null && component.clickActionName != null) {
                 throw new IllegalArgumentException("The tooltip text cannot have click data.");
             } else if (component.hoverActionData != null && component.hoverActionName != null) {
                 throw new IllegalArgumentException("The tooltip text cannot have a tooltip.");
             }
         }
-        onHover("show_text", text);
+        onHover("show_text", text.copy());
         return this;
     }
 
@@ -519,8 +549,11 @@ public class FancyMessage implements JsonRepresentedObject, Iterable<MessagePart
         if (!latest().hasText()) {
             throw new IllegalStateException("previous message part has no text");
         }
+        unshare();
         messageParts.add(new MessagePart(text));
+        hash = 0;
         dirty = true;
+        jsonBytes = null;
         return this;
     }
 
@@ -535,14 +568,105 @@ public class FancyMessage implements JsonRepresentedObject, Iterable<MessagePart
         if (!latest().hasText()) {
             throw new IllegalStateException("previous message part has no text");
         }
+        unshare();
         messageParts.add(new MessagePart());
+        hash = 0;
         dirty = true;
+        jsonBytes = null;
+        return this;
+    }
+
+    /**
+     * Shrinks the representation of this message without changing how it is displayed. Neighbouring raw text parts
+     * with the same color, styles, events and insertion are merged into one, parts with empty raw text are removed,
+     * and the color of white parts, which is the default color of chat and tooltips, is left out. Formatted tooltips
+     * are optimized as well.
+     * <p>A message whose white parts have no color takes on the color of the component it is placed in, so a message
+     * used as a translation replacement within a colored component should not be optimized. After this call, the
+     * current editing component is the last part of the optimized message, which may hold the text of several
+     * parts.</p>
+     *
+     * @return This builder instance.
+     */
+    public FancyMessage optimize() {
+        optimizeParts();
         return this;
     }
 
+    /**
+     * Performs {@link #optimize()}.
+     *
+     * @return Whether this message was changed.
+     */
+    private boolean optimizeParts() {
+        unshare();
+        List<MessagePart> parts = messageParts;
+        List<MessagePart> result = new ArrayList<>(parts.size());
+        boolean modified = false;
+        for (int i = 0; i < parts.size(); ) {
+            MessagePart part = parts.get(i);
+            String text = TextualComponent.getRawText(part.text);
+            int next = i + 1;
+            // Empty parts are dropped, unless the last one would leave the message without parts
+            if (text != null && text.isEmpty() && (next < parts.size() || !result.isEmpty())) {
+                i = next;
+                continue;
+            }
+
+            // Collect the text of the following parts with the same format, skipping empty parts in between
+            StringBuilder merged = null;
+            while (text != null && next < parts.size()) {
+                MessagePart other = parts.get(next);
+                String otherText = TextualComponent.getRawText(other.text);
+                if (otherText == null || (!otherText.isEmpty() && !part.hasSameFormat(other))) {
+                    break;
+                }
+                if (!otherText.isEmpty()) {
+                    if (merged == null) {
+                        merged = new StringBuilder(text);
+                    }
+                    merged.append(otherText);
+                }
+                next++;
+            }
+            FancyMessage tooltip = null;
+            if (part.hoverActionData instanceof FancyMessage) {
+                // Tooltips do not inherit the format of the part, so they are optimized independently
+                tooltip = ((FancyMessage) part.hoverActionData).copy();
+                if (!tooltip.optimizeParts()) {
+                    tooltip = null;
+                }
+            }
+            if (merged != null || part.color == ChatColor.WHITE || tooltip != null) {
+                part = own(part);
+                if (tooltip != null) {
+                    part.hoverActionData = tooltip;
+                }
+                if (merged != null) {
+                    part.text = TextualComponent.rawText(merged.toString());
+                }
+                if (part.color == ChatColor.WHITE) {
+                    part.color = null;
+                }
+                modified = true;
+            }
+            result.add(part);
+            i = next;
+        }
+
+        if (!modified && result.size() == parts.size()) {
+            return false;
+        }
+        messageParts = result;
+        hash = 0;
+        dirty = true;
+        jsonBytes = null;
+        return true;
+    }
+
     @Override
     public void writeJson(JsonWriter writer) throws IOException {
-        if (messageParts.size() == 1) {
+        if (parts().size() == 1) {
             latest().writeJson(writer);
         } else {
             writer.beginObject().name("text").value("").name("extra").beginArray();
@@ -553,58 +677,342 @@ public class FancyMessage implements JsonRepresentedObject, Iterable<MessagePart
         }
     }
 
+    /**
+     * Serializes this message with the {@link FancySerializer} bound to the calling thread. The result is cached until
+     * the message is modified, and only the parts which were modified since the last call are serialized again.
+     *
+     * @return The JSON representation of this message.
+     */
     public String exportToJson() {
         if (!dirty && jsonString != null) {
             return jsonString;
         }
-        StringWriter string = new StringWriter();
-        JsonWriter json = new JsonWriter(string);
-        try {
-            writeJson(json);
-            json.close();
-        } catch (IOException e) {
-            throw new RuntimeException("invalid message");
+        if (messageParts == null) {
+            // Created by lazyFromJson from bytes and never accessed: the original JSON is still current
+            return jsonString = new String(jsonBytes, StandardCharsets.UTF_8);
+        }
+        return FancySerializer.local().serialize(this);
+    }
+
+    /**
+     * Serializes this message into a compact JSON representation, which relies on the client's format inheritance.
+     * Neighbouring parts with the same color are grouped under a parent component carrying their common format, and
+     * each part only specifies the color and styles which differ from the format it inherits, using {@code false} to
+     * remove an inherited style. The message is displayed exactly like the output of {@link #exportToJson()}, and
+     * {@link #fromJson(String)} reads it back into a message which is displayed the same.
+     * <p>Unlike {@link #exportToJson()}, the result is not cached.</p>
+     *
+     * @return The compact JSON representation of this message.
+     */
+    public String exportToCompactJson() {
+        return FancySerializer.local().serializeCompact(this);
+    }
+
+    /**
+     * Serializes this message like {@link #exportToJson()}, rendering stale parts and the assembled message into the
+     * specified scratch buffer.
+     *
+     * @param buffer The scratch buffer, whose content is discarded.
+     */
+    String exportToJson(StringBuilderWriter buffer) {
+        if (!dirty && jsonString != null) {
+            return jsonString;
+        }
+        if (messageParts == null) {
+            return exportToJson();
+        }
+        if (messageParts.size() == 1) {
+            jsonString = latest().toJson(buffer);
+        } else {
+            // Serialize only the parts which were edited, then concatenate the cached fragments
+            for (MessagePart part : messageParts) {
+                part.toJson(buffer);
+            }
+            buffer.reset();
+            StringBuilder builder = buffer.getBuilder().append(JsonEmitter.EXTRA.chars);
+            for (int i = 0; i < messageParts.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                // Every fragment is cached by now, so this does not touch the buffer
+                builder.append(messageParts.get(i).toJson(buffer));
+            }
+            jsonString = builder.append(JsonEmitter.END_EXTRA.chars).toString();
         }
-        jsonString = string.toString();
         dirty = false;
         return jsonString;
     }
 
+    /**
+     * Serializes many messages in parallel on the common fork-join pool.
+     *
+     * @param messages The messages to serialize.
+     * @return A future which completes with the JSON representations of the messages, in iteration order.
+     * @see #exportAll(Collection, Executor)
+     */
+    public static CompletableFuture<List<String>> exportAll(Collection<FancyMessage> messages) {
+        return exportAll(messages, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Serializes many messages in parallel. The messages are split into contiguous batches, one task per batch, and
+     * each task reuses a single {@link FancySerializer} for all messages in its batch.
+     * <p>The messages must not be modified until the returned future completes, and the same instance must not occur
+     * more than once in the collection. Copies made with {@link #copy()} are distinct instances, and may be exported
+     * in the same batch.</p>
+     *
+     * @param messages The messages to serialize.
+     * @param executor The executor running the serialization tasks, such as a fork-join pool or a virtual thread
+     *                 executor.
+     * @return A future which completes with the JSON representations of the messages, in iteration order.
+     */
+    public static CompletableFuture<List<String>> exportAll(Collection<FancyMessage> messages, Executor executor) {
+        final FancyMessage[] array = messages.toArray(new FancyMessage[messages.size()]);
+        final String[] results = new String[array.length];
+        int batches = Math.min(array.length, Runtime.getRuntime().availableProcessors() * 4);
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[batches];
+        for (int batch = 0; batch < batches; batch++) {
+            final int from = (int) ((long) array.length * batch / batches);
+            final int to = (int) ((long) array.length * (batch + 1) / batches);
+            tasks[batch] = CompletableFuture.runAsync(() -> {
+                FancySerializer serializer = new FancySerializer();
+                for (int i = from; i < to; i++) {
+                    results[i] = serializer.serialize(array[i]);
+                }
+            }, executor);
+        }
+        return CompletableFuture.allOf(tasks).thenApply(done -> Collections.unmodifiableList(Arrays.asList(results)));
+    }
+
+    /**
+     * Writes the JSON representation of this message to the specified stream, encoded as UTF-8.
+     * The message parts are encoded as they are serialized, without building an intermediate string.
+     *
+     * @param out The stream which will receive the encoded JSON.
+     * @throws IOException If an error occurs writing to the stream.
+     */
+    public void writeJson(OutputStream out) throws IOException {
+        writeJsonUtf8(Utf8Writer.to(out));
+    }
+
+    /**
+     * Writes the JSON representation of this message into the specified buffer, encoded as UTF-8, starting at its
+     * current position. The message parts are encoded as they are serialized, without building an intermediate
+     * string.
+     *
+     * @param buffer The buffer which will receive the encoded JSON.
+     * @return The number of bytes written to the buffer.
+     * @throws java.nio.BufferOverflowException If the buffer does not have enough space remaining.
+     */
+    public int writeJsonUtf8(ByteBuffer buffer) {
+        int start = buffer.position();
+        try {
+            writeJsonUtf8(Utf8Writer.to(buffer));
+        } catch (IOException e) {
+            // The buffer itself never throws
+            throw new IllegalStateException(e);
+        }
+        return buffer.position() - start;
+    }
+
+    private void writeJsonUtf8(Utf8Writer out) throws IOException {
+        if (!dirty && jsonBytes != null) {
+            out.put(jsonBytes);
+        } else {
+            writeJson(JsonEmitter.to(out));
+        }
+        out.close();
+    }
+
+    /**
+     * Writes this message to the specified emitter. Cached JSON of the message or its parts is copied as is.
+     *
+     * @param emitter The emitter which will receive the message.
+     * @throws IOException If an error occurs writing to the emitter.
+     */
+    void writeJson(JsonEmitter emitter) throws IOException {
+        if (!dirty && (jsonString != null || messageParts == null)) {
+            emitter.raw(exportToJson());
+        } else if (messageParts.size() == 1) {
+            latest().writeJson(emitter);
+        } else {
+            emitter.token(JsonEmitter.EXTRA);
+            for (int i = 0; i < messageParts.size(); i++) {
+                if (i > 0) {
+                    emitter.punctuation(',');
+                }
+                messageParts.get(i).writeJson(emitter);
+            }
+            emitter.token(JsonEmitter.END_EXTRA);
+        }
+    }
+
+    /**
+     * Writes this message in a compact binary form, for storing messages or relaying them between servers. Decoding
+     * the output with {@link #readBinary(DataInput)} yields an equal message, with the same JSON representation.
+     * The binary form is typically less than half the size of the JSON representation.
+     *
+     * @param out The output which will receive the encoded message.
+     * @throws IOException If an error occurs writing to the output.
+     */
+    public void writeBinary(DataOutput out) throws IOException {
+        writeBinary(out, false);
+    }
+
+    /**
+     * Writes this message in a compact binary form, optionally storing repeated strings, tooltips and translation
+     * replacements only once. Deduplication pays off for messages which repeat the same commands and tooltips across
+     * many parts, such as help menus; {@link #readBinary(DataInput)} reads either form.
+     *
+     * @param out                The output which will receive the encoded message.
+     * @param deduplicateStrings Whether to store repeated strings and values only once.
+     * @throws IOException If an error occurs writing to the output.
+     */
+    public void writeBinary(DataOutput out, boolean deduplicateStrings) throws IOException {
+        BinaryCodec.write(this, out, deduplicateStrings);
+    }
+
     public String toOldMessageFormat() {
         StringBuilder result = new StringBuilder();
         for (MessagePart part : this) {
-            result.append(part.color == null ? "" : part.color);
-            for (ChatColor formatSpecifier : part.styles) {
-                result.append(formatSpecifier);
+            // Legacy format codes carry over to the following text, so the default color must be restored explicitly
+            result.append(part.color == null ? ChatColor.WHITE : part.color);
+            for (ChatColor formatSpecifier : MessagePart.STYLES) {
+                if ((part.styles & MessagePart.styleBit(formatSpecifier)) != 0) {
+                    result.append(formatSpecifier);
+                }
             }
             result.append(part.text);
         }
         return result.toString();
     }
 
+    /**
+     * Compares the content of this message with another object. Two messages are equal if they consist of equal message
+     * parts, in the same order, so that they would be serialized equivalently.
+     *
+     * @param obj The object to compare with.
+     * @return Whether the object is a message with the same content.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof FancyMessage)) {
+            return false;
+        }
+        FancyMessage other = (FancyMessage) obj;
+        if (parts() == other.parts()) {
+            return true;
+        }
+        if (messageParts.size() != other.messageParts.size() || (hash != 0 && other.hash != 0 && hash != other.hash)) {
+            return false;
+        }
+        return messageParts.equals(other.messageParts);
+    }
+
+    /**
+     * Gets the hash code of the content of this message. It is cached until the message is next modified, and message
+     * parts cache their own hash codes as well, so only the parts edited since the last call are hashed again.
+     *
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if (result == 0) {
+            result = parts().hashCode();
+            hash = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return The parts of this message, parsing them first if this message was created by {@link #lazyFromJson}.
+     * The list and its parts must not be modified.
+     */
+    List<MessagePart> parts() {
+        List<MessagePart> parts = messageParts;
+        if (parts == null) {
+            String json = jsonString != null ? jsonString : new String(jsonBytes, StandardCharsets.UTF_8);
+            parts = JsonMessageParser.parse(json).messageParts;
+            messageParts = parts;
+            // The original JSON stays valid as the cached representation until this message is modified
+            jsonString = json;
+        }
+        return parts;
+    }
+
     private MessagePart latest() {
-        return messageParts.get(messageParts.size() - 1);
+        List<MessagePart> parts = parts();
+        return parts.get(parts.size() - 1);
+    }
+
+    /**
+     * Takes ownership of the list of message parts, if it is shared with a copy of this message. All parts in the list
+     * are marked as shared, so that they are cloned before being edited.
+     */
+    private void unshare() {
+        parts();
+        if (shared) {
+            for (MessagePart part : messageParts) {
+                part.shared = true;
+            }
+            messageParts = new ArrayList<>(messageParts);
+            shared = false;
+        }
+    }
+
+    /**
+     * Prepares the current editing component for modification, cloning it first if it is shared with a copy of this
+     * message, and marks this message as dirty.
+     *
+     * @return The current editing component, which is exclusively owned by this message.
+     */
+    private MessagePart edit() {
+        unshare();
+        int index = messageParts.size() - 1;
+        MessagePart latest = own(messageParts.get(index));
+        messageParts.set(index, latest);
+        hash = 0;
+        dirty = true;
+        jsonBytes = null;
+        return latest;
+    }
+
+    /**
+     * Prepares a part of this message for modification, after {@link #unshare()}.
+     *
+     * @param part The part to modify.
+     * @return The part itself, or a clone of it if it is shared with a copy of this message. The caller must put the
+     * returned part in the place of the specified part.
+     */
+    private static MessagePart own(MessagePart part) {
+        if (part.shared) {
+            part = part.copy();
+        }
+        part.invalidate();
+        return part;
     }
 
     private void onClick(final String name, final String data) {
-        final MessagePart latest = latest();
+        final MessagePart latest = edit();
         latest.clickActionName = name;
         latest.clickActionData = data;
-        dirty = true;
     }
 
     private void onHover(final String name, final JsonRepresentedObject data) {
-        final MessagePart latest = latest();
+        final MessagePart latest = edit();
         latest.hoverActionName = name;
         latest.hoverActionData = data;
-        dirty = true;
     }
 
     /**
      * <b>Internally called method. Not for API consumption.</b>
      */
     public Iterator<MessagePart> iterator() {
-        return messageParts.iterator();
+        return parts().iterator();
     }
 
 }
@@ -0,0 +1,136 @@
+package io.github.mkremins.fanciful;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+
+/**
+ * A reusable serialization context. Each serializer owns an unsynchronized character buffer which is recycled for
+ * every object it serializes, so once the buffer has grown to fit the typical output, a serialization only allocates
+ * the resulting string.
+ * <p>Instances are not thread-safe; use one serializer per thread. {@link FancyMessage#exportToJson()} already uses a
+ * serializer bound to the calling thread.</p>
+ * <p>That serializer is created on first use in each thread which exports messages, and keeps its buffer of up to 64K
+ * characters for as long as the thread runs. It is held through a soft reference, so the garbage collector may
+ * reclaim it when memory runs low. Since the serializer also keeps the classes of this library loaded, a plugin which
+ * shades the library should call {@link #releaseLocal()} on the threads it exported from when it is disabled.</p>
+ */
+public final class FancySerializer {
+    /**
+     * Buffers which grew beyond this many characters, for an unusually large message, are not retained.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+    private static final ThreadLocal<SoftReference<FancySerializer>> LOCAL = new ThreadLocal<>();
+
+    /**
+     * @return The serializer bound to the calling thread.
+     */
+    static FancySerializer local() {
+        SoftReference<FancySerializer> reference = LOCAL.get();
+        FancySerializer serializer = reference != null ? reference.get() : null;
+        if (serializer == null) {
+            serializer = new FancySerializer();
+            LOCAL.set(new SoftReference<>(serializer));
+        }
+        return serializer;
+    }
+
+    /**
+     * Discards the serializer bound to the calling thread, along with its buffer. A new one is created if the thread
+     * exports another message.
+     */
+    public static void releaseLocal() {
+        LOCAL.remove();
+    }
+
+    private StringBuilderWriter buffer;
+
+    /**
+     * Creates a serializer with a default initial buffer size.
+     */
+    public FancySerializer() {
+        this(256);
+    }
+
+    /**
+     * Creates a serializer whose buffer initially fits the specified number of characters.
+     *
+     * @param initialCapacity The expected length of the serialized output.
+     */
+    public FancySerializer(int initialCapacity) {
+        this.buffer = new StringBuilderWriter(initialCapacity);
+    }
+
+    /**
+     * Serializes the specified message. Parts which were not modified since the message was last serialized are not
+     * serialized again.
+     *
+     * @param message The message to serialize.
+     * @return The JSON representation of the message.
+     */
+    public String serialize(FancyMessage message) {
+        return recycle(message.exportToJson(buffer));
+    }
+
+    /**
+     * Serializes the specified message into the compact JSON form described by
+     * {@link FancyMessage#exportToCompactJson()}. The result is not cached.
+     *
+     * @param message The message to serialize.
+     * @return The compact JSON representation of the message.
+     */
+    public String serializeCompact(FancyMessage message) {
+        buffer.reset();
+        try {
+            FormatTree.write(message.parts(), JsonEmitter.to(buffer.getBuilder()));
+        } catch (IOException e) {
+            // The buffer itself never throws
+            throw new IllegalStateException(e);
+        }
+        return recycle(buffer.toString());
+    }
+
+    /**
+     * Serializes the specified object.
+     *
+     * @param object The object to serialize.
+     * @return The JSON representation of the object.
+     */
+    public String serialize(JsonRepresentedObject object) {
+        if (object instanceof FancyMessage) {
+            return serialize((FancyMessage) object);
+        }
+        if (object instanceof FrozenMessage) {
+            return ((FrozenMessage) object).exportToJson();
+        }
+        buffer.reset();
+        try {
+            object.writeJson(new JsonWriter(buffer));
+        } catch (IOException e) {
+            // The buffer itself never throws
+            throw new IllegalStateException(e);
+        }
+        return recycle(buffer.toString());
+    }
+
+    /**
+     * Converts legacy text into the JSON representation of the message {@link FancyMessage#fromLegacyText} would
+     * build, writing the JSON straight into the buffer of this serializer without building the message.
+     *
+     * @param legacyText The legacy text.
+     * @return The JSON representation of the converted message.
+     */
+    public String legacyToJson(CharSequence legacyText) {
+        return recycle(LegacyText.toJson(legacyText, buffer.getBuilder()));
+    }
+
+    private String recycle(String result) {
+        if (buffer.getBuilder().capacity() > MAX_RETAINED_CAPACITY) {
+            // Start over from the size of this output, rather than holding on to the oversized buffer
+            buffer = new StringBuilderWriter(Math.min(result.length(), MAX_RETAINED_CAPACITY));
+        }
+        return result;
+    }
+
+}
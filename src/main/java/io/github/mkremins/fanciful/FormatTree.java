@@ -0,0 +1,148 @@
+package io.github.mkremins.fanciful;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Internal class: Writes messages in a compact JSON form which relies on the client's format inheritance. The
+ * components in an {@code extra} array inherit the color and styles of the component holding the array, so a part
+ * only needs the properties which differ from its parent, using {@code false} to remove an inherited style.
+ * <p>The root component takes the format which saves the most properties across all parts. Runs of neighbouring parts
+ * with the same color are grouped under a parent component carrying that color, and the styles shared by most of the
+ * run, if this is shorter than writing the parts on their own. Only the top level of a message is restructured; hover
+ * values and translation replacements are written as usual.</p>
+ */
+final class FormatTree {
+    /**
+     * The color displayed when no color is inherited.
+     */
+    private static final ChatColor DEFAULT_COLOR = ChatColor.WHITE;
+    private static final int GROUP_OVERHEAD = JsonEmitter.EMPTY_TEXT.chars.length
+            + JsonEmitter.EXTRA_ARRAY.chars.length + JsonEmitter.END_EXTRA.chars.length;
+
+    private FormatTree() {
+    }
+
+    static void write(List<MessagePart> parts, JsonEmitter emitter) throws IOException {
+        if (parts.size() == 1) {
+            parts.get(0).writeJson(emitter, DEFAULT_COLOR, 0);
+            return;
+        }
+
+        // Choose the root format among the formats of the parts
+        ChatColor rootColor = DEFAULT_COLOR;
+        int rootStyles = 0;
+        int best = cost(parts, 0, parts.size(), rootColor, rootStyles);
+        boolean[] tried = new boolean[ChatColor.values().length << MessagePart.STYLES.length];
+        for (MessagePart part : parts) {
+            ChatColor color = part.displayColor();
+            int format = (color.ordinal() << MessagePart.STYLES.length) | part.styles;
+            if (tried[format]) {
+                continue;
+            }
+            tried[format] = true;
+            int cost = cost(color, part.styles, DEFAULT_COLOR, 0) + cost(parts, 0, parts.size(), color, part.styles);
+            if (cost < best) {
+                best = cost;
+                rootColor = color;
+                rootStyles = part.styles;
+            }
+        }
+
+        emitter.token(JsonEmitter.EMPTY_TEXT);
+        MessagePart.emitFormat(emitter, rootColor, rootStyles, DEFAULT_COLOR, 0);
+        emitter.token(JsonEmitter.EXTRA_ARRAY);
+        for (int i = 0; i < parts.size(); ) {
+            if (i > 0) {
+                emitter.punctuation(',');
+            }
+            ChatColor color = parts.get(i).displayColor();
+            int end = i + 1;
+            while (end < parts.size() && parts.get(end).displayColor() == color) {
+                end++;
+            }
+            if (end - i == 1) {
+                parts.get(i).writeJson(emitter, rootColor, rootStyles);
+                i = end;
+                continue;
+            }
+
+            int styles = groupStyles(parts, i, end, rootStyles);
+            int flat = cost(parts, i, end, rootColor, rootStyles);
+            int grouped = GROUP_OVERHEAD + cost(color, styles, rootColor, rootStyles)
+                    + cost(parts, i, end, color, styles);
+            if (grouped < flat) {
+                emitter.token(JsonEmitter.EMPTY_TEXT);
+                MessagePart.emitFormat(emitter, color, styles, rootColor, rootStyles);
+                emitter.token(JsonEmitter.EXTRA_ARRAY);
+                for (int j = i; j < end; j++) {
+                    if (j > i) {
+                        emitter.punctuation(',');
+                    }
+                    parts.get(j).writeJson(emitter, color, styles);
+                }
+                emitter.token(JsonEmitter.END_EXTRA);
+            } else {
+                for (int j = i; j < end; j++) {
+                    if (j > i) {
+                        emitter.punctuation(',');
+                    }
+                    parts.get(j).writeJson(emitter, rootColor, rootStyles);
+                }
+            }
+            i = end;
+        }
+        emitter.token(JsonEmitter.END_EXTRA);
+    }
+
+    /**
+     * Chooses the styles of a group parent, keeping each style which costs less to set on the parent and remove from
+     * the parts lacking it than to set on the parts having it.
+     */
+    private static int groupStyles(List<MessagePart> parts, int start, int end, int inheritedStyles) {
+        int styles = 0;
+        for (int i = 0; i < MessagePart.STYLES.length; i++) {
+            int bit = 1 << i;
+            int count = 0;
+            for (int j = start; j < end; j++) {
+                if ((parts.get(j).styles & bit) != 0) {
+                    count++;
+                }
+            }
+            int trueLength = MessagePart.STYLES[i].jsonToken.chars.length;
+            int falseLength = MessagePart.STYLES[i].jsonFalseToken.chars.length;
+            boolean inherited = (inheritedStyles & bit) != 0;
+            int withStyle = (end - start - count) * falseLength + (inherited ? 0 : trueLength);
+            int withoutStyle = count * trueLength + (inherited ? falseLength : 0);
+            if (withStyle < withoutStyle) {
+                styles |= bit;
+            }
+        }
+        return styles;
+    }
+
+    private static int cost(List<MessagePart> parts, int start, int end, ChatColor color, int styles) {
+        int cost = 0;
+        for (int i = start; i < end; i++) {
+            MessagePart part = parts.get(i);
+            cost += cost(part.displayColor(), part.styles, color, styles);
+        }
+        return cost;
+    }
+
+    /**
+     * @return The number of characters of the properties which change the inherited format into the specified one.
+     */
+    private static int cost(ChatColor color, int styles, ChatColor inheritedColor, int inheritedStyles) {
+        int cost = color != inheritedColor ? color.jsonToken.chars.length : 0;
+        int changed = styles ^ inheritedStyles;
+        for (int i = 0; i < MessagePart.STYLES.length; i++) {
+            if ((changed & (1 << i)) != 0) {
+                ChatColor style = MessagePart.STYLES[i];
+                cost += ((styles & (1 << i)) != 0 ? style.jsonToken : style.jsonFalseToken).chars.length;
+            }
+        }
+        return cost;
+    }
+
+}
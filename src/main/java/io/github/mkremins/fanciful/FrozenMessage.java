@@ -0,0 +1,101 @@
+package io.github.mkremins.fanciful;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents an immutable snapshot of a {@link FancyMessage}, as returned by {@link FancyMessage#freeze()}.
+ * <p>The snapshot owns a private copy of the message, whose parts are never modified in place, and its JSON
+ * representation is computed once when the snapshot is created. Instances are therefore thread-safe, and can be shared
+ * between threads and recipients without any defensive copying.</p>
+ */
+public final class FrozenMessage implements JsonRepresentedObject {
+    private final FancyMessage message;
+    private final String jsonString;
+    private final byte[] jsonBytes;
+    private String legacyString;
+
+    FrozenMessage(FancyMessage source) {
+        this.message = source.copy();
+        // Parse a lazy message now, so that readers never fill in its parts concurrently
+        message.parts();
+        this.jsonString = message.exportToJson();
+        this.jsonBytes = jsonString.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The JSON representation of the message.
+     */
+    public String exportToJson() {
+        return jsonString;
+    }
+
+    /**
+     * @return A read-only view of the UTF-8 encoded JSON representation of the message. The view shares the bytes held
+     * by this snapshot; no copy is made.
+     */
+    public ByteBuffer getJsonUtf8() {
+        return ByteBuffer.wrap(jsonBytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies the UTF-8 encoded JSON representation of the message into the specified buffer, starting at its current
+     * position.
+     *
+     * @param buffer The buffer which will receive the encoded JSON.
+     * @return The number of bytes written to the buffer.
+     * @throws java.nio.BufferOverflowException If the buffer does not have enough space remaining.
+     */
+    public int writeJsonUtf8(ByteBuffer buffer) {
+        buffer.put(jsonBytes);
+        return jsonBytes.length;
+    }
+
+    /**
+     * Writes the UTF-8 encoded JSON representation of the message to the specified stream.
+     *
+     * @param out The stream which will receive the encoded JSON.
+     * @throws IOException If an error occurs writing to the stream.
+     */
+    public void writeJson(OutputStream out) throws IOException {
+        out.write(jsonBytes);
+    }
+
+    @Override
+    public void writeJson(JsonWriter writer) throws IOException {
+        message.writeJson(writer);
+    }
+
+    public String toOldMessageFormat() {
+        String result = legacyString;
+        if (result == null) {
+            // Benign race: every thread computes the same immutable value
+            legacyString = result = message.toOldMessageFormat();
+        }
+        return result;
+    }
+
+    /**
+     * Creates a mutable message with the same content as this snapshot.
+     *
+     * @return A new message, which may be modified without affecting this snapshot.
+     */
+    public FancyMessage thaw() {
+        return message.copy();
+    }
+
+    /**
+     * Snapshots are immutable, so this returns the snapshot itself.
+     *
+     * @return This snapshot.
+     */
+    @Override
+    public FrozenMessage copy() {
+        return this;
+    }
+
+}
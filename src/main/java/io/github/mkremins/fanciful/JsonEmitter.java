@@ -0,0 +1,231 @@
+package io.github.mkremins.fanciful;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Internal class: Writes chat components as JSON without going through Gson's general-purpose {@link JsonWriter}.
+ * The schema of a chat component is fixed, so its keys and punctuation are written as constant tokens, precomputed
+ * both as characters and as UTF-8 bytes, and no state stack is kept to validate the structure. The output is identical
+ * to that of the {@code writeJson(JsonWriter)} methods.
+ * <p>Objects of types unknown to the emitter are written through a {@link JsonWriter} and copied into the output.</p>
+ */
+abstract class JsonEmitter {
+
+    /**
+     * Internal class: A constant sequence of ASCII characters, with its UTF-8 encoding.
+     */
+    static final class Token {
+        final char[] chars;
+        final byte[] bytes;
+
+        Token(String value) {
+            this.chars = value.toCharArray();
+            this.bytes = value.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    static final Token NULL = new Token("null");
+    static final Token TEXT = new Token("\"text\":");
+    static final Token CLICK_EVENT = new Token(",\"clickEvent\":{\"action\":");
+    static final Token HOVER_EVENT = new Token(",\"hoverEvent\":{\"action\":");
+    static final Token VALUE = new Token(",\"value\":");
+    static final Token INSERTION = new Token(",\"insertion\":");
+    static final Token WITH = new Token(",\"with\":[");
+    static final Token EXTRA = new Token("{\"text\":\"\",\"extra\":[");
+    static final Token EMPTY_TEXT = new Token("{\"text\":\"\"");
+    static final Token EXTRA_ARRAY = new Token(",\"extra\":[");
+    static final Token END_EXTRA = new Token("]}");
+
+    /**
+     * Creates an emitter which appends characters to the specified builder.
+     *
+     * @param out The builder which will receive the JSON.
+     * @return The new emitter.
+     */
+    static JsonEmitter to(StringBuilder out) {
+        return new CharEmitter(out);
+    }
+
+    /**
+     * Creates an emitter which writes UTF-8 encoded bytes to the specified writer.
+     *
+     * @param out The writer which will receive the JSON.
+     * @return The new emitter.
+     */
+    static JsonEmitter to(Utf8Writer out) {
+        return new ByteEmitter(out);
+    }
+
+    /**
+     * Writes a constant token.
+     *
+     * @param token The token to write.
+     * @throws IOException If an error occurs writing to the sink.
+     */
+    abstract void token(Token token) throws IOException;
+
+    /**
+     * Writes a single ASCII character of JSON punctuation.
+     *
+     * @param c The character to write.
+     * @throws IOException If an error occurs writing to the sink.
+     */
+    abstract void punctuation(char c) throws IOException;
+
+    /**
+     * Writes a JSON string literal, or {@code null}.
+     *
+     * @param value The value to quote and escape.
+     * @throws IOException If an error occurs writing to the sink.
+     */
+    abstract void string(String value) throws IOException;
+
+    /**
+     * Writes text which is already valid JSON, without escaping it.
+     *
+     * @param json The JSON to write.
+     * @throws IOException If an error occurs writing to the sink.
+     */
+    abstract void raw(String json) throws IOException;
+
+    /**
+     * Writes an object name and the colon following it.
+     *
+     * @param name The name to write.
+     * @throws IOException If an error occurs writing to the sink.
+     */
+    void name(String name) throws IOException {
+        string(name);
+        punctuation(':');
+    }
+
+    /**
+     * Writes a value held by a message part, such as a hover event value or a translation replacement.
+     *
+     * @param value The value to write.
+     * @throws IOException If an error occurs writing to the sink.
+     */
+    void value(JsonRepresentedObject value) throws IOException {
+        if (value instanceof JsonString) {
+            string(((JsonString) value).getValue());
+        } else if (value instanceof FancyMessage) {
+            ((FancyMessage) value).writeJson(this);
+        } else if (value instanceof FrozenMessage) {
+            raw(((FrozenMessage) value).exportToJson());
+        } else {
+            StringBuilderWriter buffer = new StringBuilderWriter();
+            JsonWriter writer = new JsonWriter(buffer);
+            // Gson only accepts a bare value at the top level in lenient mode
+            writer.setLenient(true);
+            value.writeJson(writer);
+            writer.close();
+            raw(buffer.toString());
+        }
+    }
+
+    private static final class CharEmitter extends JsonEmitter {
+        private final StringBuilder out;
+
+        CharEmitter(StringBuilder out) {
+            this.out = out;
+        }
+
+        @Override
+        void token(Token token) {
+            out.append(token.chars);
+        }
+
+        @Override
+        void punctuation(char c) {
+            out.append(c);
+        }
+
+        @Override
+        void string(String value) {
+            if (value == null) {
+                out.append(NULL.chars);
+            } else {
+                JsonEscaper.appendQuoted(out, value);
+            }
+        }
+
+        @Override
+        void raw(String json) {
+            out.append(json);
+        }
+    }
+
+    private static final class ByteEmitter extends JsonEmitter {
+        private final Utf8Writer out;
+
+        ByteEmitter(Utf8Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        void token(Token token) throws IOException {
+            out.put(token.bytes);
+        }
+
+        @Override
+        void punctuation(char c) throws IOException {
+            out.put(c);
+        }
+
+        @Override
+        void string(String value) throws IOException {
+            if (value == null) {
+                out.put(NULL.bytes);
+                return;
+            }
+            out.put('"');
+            for (int i = 0, length = value.length(); i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    // Fast path: ASCII text is copied byte by byte, and only checked for escapes
+                    if (c < 0x20 || c == '"' || c == '\\') {
+                        putAscii(JsonEscaper.replacement(c));
+                    } else {
+                        out.put(c);
+                    }
+                } else if (c < 0x800) {
+                    out.put(0xC0 | (c >> 6));
+                    out.put(0x80 | (c & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                        out.put(0xF0 | (codePoint >> 18));
+                        out.put(0x80 | ((codePoint >> 12) & 0x3F));
+                        out.put(0x80 | ((codePoint >> 6) & 0x3F));
+                        out.put(0x80 | (codePoint & 0x3F));
+                    } else {
+                        // Unpaired surrogate, encoded like String.getBytes does
+                        out.put('?');
+                    }
+                } else if (c == '\u2028' || c == '\u2029') {
+                    putAscii(JsonEscaper.replacement(c));
+                } else {
+                    out.put(0xE0 | (c >> 12));
+                    out.put(0x80 | ((c >> 6) & 0x3F));
+                    out.put(0x80 | (c & 0x3F));
+                }
+            }
+            out.put('"');
+        }
+
+        @Override
+        void raw(String json) throws IOException {
+            out.write(json);
+        }
+
+        private void putAscii(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                out.put(value.charAt(i));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package io.github.mkremins.fanciful;
+
+/**
+ * Internal class: Escapes text for use within JSON string literals.
+ * The escaping matches that performed by Gson's {@link com.google.gson.stream.JsonWriter}, so output produced with
+ * either one is identical.
+ */
+final class JsonEscaper {
+    private static final String[] REPLACEMENTS = new String[128];
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            REPLACEMENTS[c] = String.format("\\u%04x", c);
+        }
+        REPLACEMENTS['"'] = "\\\"";
+        REPLACEMENTS['\\'] = "\\\\";
+        REPLACEMENTS['\t'] = "\\t";
+        REPLACEMENTS['\b'] = "\\b";
+        REPLACEMENTS['\n'] = "\\n";
+        REPLACEMENTS['\r'] = "\\r";
+        REPLACEMENTS['\f'] = "\\f";
+    }
+
+    private JsonEscaper() {
+    }
+
+    /**
+     * Appends the specified value as a quoted JSON string literal.
+     *
+     * @param out   The builder which will receive the literal.
+     * @param value The value to quote.
+     */
+    static void appendQuoted(StringBuilder out, CharSequence value) {
+        out.append('"');
+        appendEscaped(out, value);
+        out.append('"');
+    }
+
+    /**
+     * Appends the specified value, escaped for use within a JSON string literal. No quotes are added.
+     *
+     * @param out   The builder which will receive the escaped value.
+     * @param value The value to escape.
+     */
+    static void appendEscaped(StringBuilder out, CharSequence value) {
+        appendEscaped(out, value, 0, value.length());
+    }
+
+    /**
+     * Appends a region of the specified value, escaped for use within a JSON string literal. No quotes are added.
+     *
+     * @param out   The builder which will receive the escaped region.
+     * @param value The value containing the region.
+     * @param start The start index of the region, inclusive.
+     * @param end   The end index of the region, exclusive.
+     */
+    static void appendEscaped(StringBuilder out, CharSequence value, int start, int end) {
+        int last = start;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (!needsEscape(c)) {
+                continue;
+            }
+            if (last < i) {
+                out.append(value, last, i);
+            }
+            appendEscape(out, c);
+            last = i + 1;
+        }
+        if (last < end) {
+            out.append(value, last, end);
+        }
+    }
+
+    static boolean needsEscape(char c) {
+        return c < 0x20 || c == '"' || c == '\\' || c == '\u2028' || c == '\u2029';
+    }
+
+    static void appendEscape(StringBuilder out, char c) {
+        out.append(replacement(c));
+    }
+
+    /**
+     * Gets the escape sequence replacing a character which {@linkplain #needsEscape(char) needs escaping}. Escape
+     * sequences consist of ASCII characters only.
+     *
+     * @param c The character to escape.
+     * @return The escape sequence.
+     */
+    static String replacement(char c) {
+        if (c < REPLACEMENTS.length) {
+            return REPLACEMENTS[c];
+        }
+        return c == '\u2028' ? "\\u2028" : "\\u2029";
+    }
+
+}
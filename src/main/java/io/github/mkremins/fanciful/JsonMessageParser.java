@@ -0,0 +1,236 @@
+package io.github.mkremins.fanciful;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Internal class: Reads {@link FancyMessage} instances from a JSON stream in a single pass.
+ * The fields of each {@link MessagePart} are filled in as their tokens are encountered, and nested messages (within
+ * hover events and translation replacements) are read from the same stream rather than being re-serialized and parsed
+ * again.
+ * <p>Nested {@code extra} arrays, as written by {@link FancyMessage#exportToCompactJson()}, are flattened into the
+ * list of parts. Like on the client, the components in an array inherit the color, styles, events and insertion of
+ * the component holding the array, as far as these precede the array in the JSON.</p>
+ * <p>A parser may deduplicate the strings it reads: equal strings, such as repeated commands and action names, are
+ * then represented by a single instance, and equal string values share a single {@link JsonString}.</p>
+ */
+final class JsonMessageParser {
+    private static final JsonMessageParser DEFAULT = new JsonMessageParser(false);
+
+    private final Map<String, String> strings;
+    private final Map<String, JsonString> values;
+
+    private JsonMessageParser(boolean deduplicate) {
+        this.strings = deduplicate ? new HashMap<String, String>() : null;
+        this.values = deduplicate ? new HashMap<String, JsonString>() : null;
+    }
+
+    static FancyMessage parse(String json) {
+        return parse(json, false);
+    }
+
+    static FancyMessage parse(String json, boolean deduplicate) {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.setLenient(true);
+        try {
+            return (deduplicate ? new JsonMessageParser(true) : DEFAULT).message(reader);
+        } catch (IOException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Reads a single message from the stream. A message is either a single message part, or a root part whose
+     * {@code extra} array holds the actual message parts, as written by {@link FancyMessage#writeJson}. Like any other
+     * component with an {@code extra} array, the root part itself is only kept if it has text of its own.
+     *
+     * @param reader The reader positioned at the start of the message.
+     * @return The message read from the stream.
+     * @throws IOException If an error occurs while reading from the stream.
+     */
+    static FancyMessage readMessage(JsonReader reader) throws IOException {
+        return DEFAULT.message(reader);
+    }
+
+    private FancyMessage message(JsonReader reader) throws IOException {
+        List<MessagePart> parts = new ArrayList<>();
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            MessagePart root = new MessagePart();
+            // A missing color stays missing, so that the message is exported as it was read
+            root.color = null;
+            List<MessagePart> extra = readPart(reader, root);
+            if (extra == null || hasText(root)) {
+                parts.add(root);
+            }
+            if (extra != null) {
+                parts.addAll(extra);
+            }
+        } else {
+            // A bare string is shorthand for a single raw text component
+            MessagePart part = new MessagePart(TextualComponent.rawText(string(reader)));
+            part.color = null;
+            parts.add(part);
+        }
+        return new FancyMessage(parts);
+    }
+
+    /**
+     * Reads a component into the specified part, which holds the format inherited from its parent.
+     *
+     * @return The parts read from the {@code extra} array of the component, flattened, or {@code null} if it has none.
+     */
+    private List<MessagePart> readPart(JsonReader reader, MessagePart component) throws IOException {
+        List<MessagePart> extra = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            int bit = MessagePart.styleBit(key);
+
+            if (TextualComponent.isTextKey(key)) {
+                component.text = TextualComponent.deserialize(string(key), reader, this);
+
+            } else if (bit != 0) {
+                if (reader.nextBoolean()) {
+                    component.styles |= bit;
+                } else {
+                    // Removes an inherited style
+                    component.styles &= ~bit;
+                }
+
+            } else if (key.equals("color")) {
+                component.color = ChatColor.byJsonColorName(reader.nextString());
+
+            } else if (key.equals("clickEvent")) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (name.equals("action")) {
+                        component.clickActionName = string(reader);
+                    } else if (name.equals("value")) {
+                        component.clickActionData = string(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+            } else if (key.equals("hoverEvent")) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (name.equals("action")) {
+                        component.hoverActionName = string(reader);
+                    } else if (name.equals("value")) {
+                        component.hoverActionData = readValue(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+            } else if (key.equals("insertion")) {
+                component.insertionData = string(reader);
+
+            } else if (key.equals("with")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    component.translationReplacements.add(readValue(reader));
+                }
+                reader.endArray();
+
+            } else if (key.equals("extra")) {
+                extra = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    MessagePart part = inherit(component);
+                    List<MessagePart> children = readPart(reader, part);
+                    if (children == null || hasText(part)) {
+                        extra.add(part);
+                    }
+                    if (children != null) {
+                        extra.addAll(children);
+                    }
+                }
+                reader.endArray();
+
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return extra;
+    }
+
+    /**
+     * Checks whether a component with an {@code extra} array is kept as a part. A component which only groups its
+     * children, without text of its own, is left out.
+     */
+    private static boolean hasText(MessagePart component) {
+        return component.text != null && !"".equals(TextualComponent.getRawText(component.text));
+    }
+
+    /**
+     * Creates a part which inherits the color, styles, events and insertion of the specified parent.
+     */
+    private static MessagePart inherit(MessagePart parent) {
+        MessagePart part = new MessagePart();
+        part.color = parent.color;
+        part.styles = parent.styles;
+        part.clickActionName = parent.clickActionName;
+        part.clickActionData = parent.clickActionData;
+        part.hoverActionName = parent.hoverActionName;
+        part.hoverActionData = parent.hoverActionData;
+        part.insertionData = parent.insertionData;
+        return part;
+    }
+
+    private JsonRepresentedObject readValue(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            // The only composite type we currently store is another FancyMessage, which is read in place
+            return message(reader);
+        }
+        // Assume string
+        String value = reader.nextString();
+        if (values == null) {
+            return new JsonString(value);
+        }
+        JsonString result = values.get(value);
+        if (result == null) {
+            result = new JsonString(value);
+            values.put(value, result);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a string value, replacing it with an equal string read before if this parser deduplicates strings.
+     *
+     * @param reader The reader positioned at a string value.
+     * @return The string value.
+     * @throws IOException If an error occurs while reading from the stream.
+     */
+    String string(JsonReader reader) throws IOException {
+        return string(reader.nextString());
+    }
+
+    private String string(String value) {
+        if (strings == null) {
+            return value;
+        }
+        String result = strings.get(value);
+        if (result == null) {
+            strings.put(value, value);
+            result = value;
+        }
+        return result;
+    }
+
+}
@@ -3,6 +3,7 @@ package io.github.mkremins.fanciful;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.util.Objects;
 
 /**
  * Represents a JSON string value.
@@ -30,6 +31,16 @@ final class JsonString implements JsonRepresentedObject {
         return value;
     }
 
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof JsonString && Objects.equals(value, ((JsonString) other).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(value);
+    }
+
     @Override
     public String toString() {
         return value;
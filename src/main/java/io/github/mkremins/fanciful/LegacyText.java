@@ -0,0 +1,358 @@
+package io.github.mkremins.fanciful;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Internal class: Tokenizes legacy text, which uses {@link ChatColor#COLOR_CHAR} format codes, in a single linear
+ * pass. Format codes and web links are reported to a {@link Handler} as they are encountered, along with the runs of
+ * plain text between them.
+ * <p>Web links are only detected at the start of a word, where words are separated by whitespace or format codes.
+ * The end of the current word is located once and remembered, so no part of the text is scanned more than a constant
+ * number of times.</p>
+ */
+final class LegacyText {
+
+    /**
+     * Receives the tokens of a legacy text.
+     */
+    interface Handler {
+
+        /**
+         * Receives a run of plain text in the current format.
+         *
+         * @param source The legacy text.
+         * @param start  The start index of the run, inclusive.
+         * @param end    The end index of the run, exclusive.
+         */
+        void text(CharSequence source, int start, int end);
+
+        /**
+         * Receives a valid format code. Invalid format codes are dropped from the text without being reported.
+         *
+         * @param format The color or style represented by the code.
+         */
+        void format(ChatColor format);
+
+        /**
+         * Receives a web link in the current format.
+         *
+         * @param source The legacy text.
+         * @param start  The start index of the link, inclusive.
+         * @param end    The end index of the link, exclusive.
+         */
+        void link(CharSequence source, int start, int end);
+
+    }
+
+    private LegacyText() {
+    }
+
+    static FancyMessage toMessage(CharSequence text) {
+        MessageBuilder builder = new MessageBuilder();
+        scan(text, builder);
+        return builder.build();
+    }
+
+    /**
+     * Converts legacy text directly into the JSON representation of the message {@link #toMessage} would build,
+     * writing the parts into the specified buffer as they are scanned.
+     *
+     * @param text The legacy text.
+     * @param out  The buffer which will receive the JSON. Its content is discarded.
+     * @return The JSON representation of the message.
+     */
+    static String toJson(CharSequence text, StringBuilder out) {
+        out.setLength(0);
+        JsonBuilder builder = new JsonBuilder(out);
+        scan(text, builder);
+        return builder.build();
+    }
+
+    static void scan(CharSequence text, Handler handler) {
+        int length = text.length();
+        int runStart = 0;
+        int wordEnd = -1;
+        boolean wordStart = true;
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == ChatColor.COLOR_CHAR) {
+                if (runStart < i) {
+                    handler.text(text, runStart, i);
+                }
+                i++;
+                runStart = i + 1;
+                if (i == length) {
+                    break;
+                }
+                ChatColor format = ChatColor.getByCharIgnoreCase(text.charAt(i));
+                if (format != null) {
+                    handler.format(format);
+                    wordStart = true;
+                }
+                continue;
+            }
+
+            if (isWhitespace(c)) {
+                wordStart = true;
+                continue;
+            }
+            if (!wordStart) {
+                continue;
+            }
+            wordStart = false;
+
+            if (wordEnd < i) {
+                wordEnd = i + 1;
+                while (wordEnd < length && !isWhitespace(text.charAt(wordEnd))) {
+                    wordEnd++;
+                }
+            }
+            if (isLink(text, i, wordEnd)) {
+                if (runStart < i) {
+                    handler.text(text, runStart, i);
+                }
+                handler.link(text, i, wordEnd);
+                i = wordEnd - 1;
+                runStart = wordEnd;
+            }
+        }
+        if (runStart < length) {
+            handler.text(text, runStart, length);
+        }
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Checks whether the specified region, which contains no whitespace, is a web link. This is equivalent to matching
+     * the region against {@code (?:https?://)?[-\w.]{2,}\.[a-z]{2,4}(/\S*)?}, without the overhead of a regular
+     * expression. The host name ends at the first character which is not allowed in it, so the final dot within it
+     * must introduce the top level domain.
+     */
+    private static boolean isLink(CharSequence text, int start, int end) {
+        int i = start;
+        if (startsWith(text, i, end, "https://")) {
+            i += 8;
+        } else if (startsWith(text, i, end, "http://")) {
+            i += 7;
+        }
+
+        int hostStart = i;
+        int lastDot = -1;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                lastDot = i;
+            } else if (!isHostChar(c)) {
+                break;
+            }
+        }
+        if (i < end && text.charAt(i) != '/') {
+            return false;
+        }
+        if (lastDot - hostStart < 2) {
+            return false;
+        }
+
+        int domainLength = i - lastDot - 1;
+        if (domainLength < 2 || domainLength > 4) {
+            return false;
+        }
+        for (int j = lastDot + 1; j < i; j++) {
+            char c = text.charAt(j);
+            if (c < 'a' || c > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHostChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+    }
+
+    private static boolean startsWith(CharSequence text, int start, int end, String prefix) {
+        if (end - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A handler which keeps track of the current format. A style code adds the style, while a color code or a reset
+     * sets the color and clears all styles.
+     */
+    private abstract static class FormatTracker implements Handler {
+        ChatColor color = ChatColor.WHITE;
+        int styles;
+
+        @Override
+        @SuppressWarnings("fallthrough")
+        public void format(ChatColor format) {
+            // The text received so far keeps the previous format
+            flush();
+
+            switch (format) {
+                case BOLD:
+                case ITALIC:
+                case UNDERLINE:
+                case STRIKETHROUGH:
+                case MAGIC:
+                    styles |= MessagePart.styleBit(format);
+                    break;
+                case RESET:
+                    format = ChatColor.WHITE;
+                    // fall through
+                default:
+                    color = format;
+                    styles = 0;
+                    break;
+            }
+        }
+
+        /**
+         * Completes the text received in the current format.
+         */
+        abstract void flush();
+    }
+
+    /**
+     * Builds the message parts of a {@link FancyMessage} from the tokens of a legacy text.
+     */
+    private static final class MessageBuilder extends FormatTracker {
+        private final List<MessagePart> components = new ArrayList<>();
+        private final StringBuilder builder = new StringBuilder();
+
+        @Override
+        public void text(CharSequence source, int start, int end) {
+            builder.append(source, start, end);
+        }
+
+        @Override
+        public void link(CharSequence source, int start, int end) {
+            flush();
+
+            String urlString = source.subSequence(start, end).toString();
+            MessagePart link = part(urlString);
+            link.clickActionName = "open_url";
+            link.clickActionData = urlString.startsWith("http") ? urlString : "http://" + urlString;
+            components.add(link);
+        }
+
+        @Override
+        void flush() {
+            if (builder.length() > 0) {
+                components.add(part(builder.toString()));
+                builder.setLength(0);
+            }
+        }
+
+        private MessagePart part(String text) {
+            MessagePart part = new MessagePart(TextualComponent.rawText(text));
+            part.color = color;
+            part.styles = styles;
+            return part;
+        }
+
+        FancyMessage build() {
+            flush();
+            return new FancyMessage(components);
+        }
+    }
+
+    /**
+     * Writes the JSON of the message parts {@link MessageBuilder} would build from the tokens of a legacy text. The
+     * text of a part is escaped straight from the source as its runs are received, and the part is completed with its
+     * format once the run ends. The parts are written inside an {@code extra} array, whose wrapper is cut off if the
+     * message turns out to have a single part.
+     */
+    private static final class JsonBuilder extends FormatTracker {
+        private final StringBuilder out;
+        private int parts;
+        private boolean open; // Whether the text of a part is being written
+
+        JsonBuilder(StringBuilder out) {
+            this.out = out;
+            out.append(JsonEmitter.EXTRA.chars);
+        }
+
+        @Override
+        public void text(CharSequence source, int start, int end) {
+            if (!open) {
+                beginPart();
+                open = true;
+            }
+            JsonEscaper.appendEscaped(out, source, start, end);
+        }
+
+        @Override
+        public void link(CharSequence source, int start, int end) {
+            flush();
+
+            beginPart();
+            JsonEscaper.appendEscaped(out, source, start, end);
+            endText();
+            out.append(JsonEmitter.CLICK_EVENT.chars).append("\"open_url\"").append(JsonEmitter.VALUE.chars).append('"');
+            if (!startsWith(source, start, end, "http")) {
+                out.append("http://");
+            }
+            JsonEscaper.appendEscaped(out, source, start, end);
+            out.append("\"}}");
+        }
+
+        private void beginPart() {
+            if (parts++ > 0) {
+                out.append(',');
+            }
+            out.append('{').append(JsonEmitter.TEXT.chars).append('"');
+        }
+
+        /**
+         * Closes the text of the current part and appends its format.
+         */
+        private void endText() {
+            out.append('"').append(color.jsonToken.chars);
+            for (int i = 0; i < MessagePart.STYLES.length; i++) {
+                if ((styles & (1 << i)) != 0) {
+                    out.append(MessagePart.STYLES[i].jsonToken.chars);
+                }
+            }
+        }
+
+        @Override
+        void flush() {
+            if (open) {
+                endText();
+                out.append('}');
+                open = false;
+            }
+        }
+
+        String build() {
+            flush();
+
+            // An empty message gets a single empty part, like the FancyMessage constructor gives it
+            if (parts == 0) {
+                color = ChatColor.WHITE;
+                styles = 0;
+                beginPart();
+                endText();
+                out.append('}');
+            }
+            if (parts == 1) {
+                return out.substring(JsonEmitter.EXTRA.chars.length);
+            }
+            return out.append(JsonEmitter.END_EXTRA.chars).toString();
+        }
+    }
+
+}
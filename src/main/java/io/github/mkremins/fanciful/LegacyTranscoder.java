@@ -0,0 +1,124 @@
+package io.github.mkremins.fanciful;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Internal class: Converts the JSON representation of a message into legacy text in a single pass over the JSON
+ * tokens. The legacy text of each message part is written as soon as the part has been read, so no
+ * {@link FancyMessage} or {@link MessagePart} is created. The output is identical to that of
+ * {@link FancyMessage#toOldMessageFormat()} on the parsed message.
+ */
+final class LegacyTranscoder {
+
+    private LegacyTranscoder() {
+    }
+
+    static String jsonToLegacy(String json) {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.setLenient(true);
+        StringBuilder out = new StringBuilder(json.length() / 2);
+        try {
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                readPart(reader, out, ChatColor.WHITE, 0, true);
+            } else {
+                // A bare string is shorthand for a single raw text component
+                appendPart(out, ChatColor.WHITE, 0, reader.nextString());
+            }
+        } catch (IOException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Reads a message part, like the message parser does, and appends its legacy text. The components in the
+     * {@code extra} array of a part inherit its color and styles, and their legacy text follows that of the part
+     * itself, unless the part has no text of its own. If the root part of a message appends nothing, it is read as a
+     * single empty part.
+     * <p>The legacy text of a part is written ahead of its children when its text precedes the {@code extra} array.
+     * Only if the text follows the array, or the text or format changes after it, is the legacy text of the part
+     * spliced in ahead of the children once the part has been read.</p>
+     */
+    private static void readPart(JsonReader reader, StringBuilder out, ChatColor color, int styles, boolean root)
+            throws IOException {
+        int start = out.length();
+        String text = null;
+        boolean emptyRawText = false;
+        boolean extra = false;
+        int written = 0; // The length of the legacy text of this part written ahead of its children
+        boolean changed = false; // Whether the text or format changed after the legacy text was written
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            int bit = MessagePart.styleBit(key);
+
+            if (TextualComponent.isTextKey(key)) {
+                if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    // The readable string of a complex text component is its key
+                    reader.skipValue();
+                    text = key;
+                    emptyRawText = false;
+                } else {
+                    text = reader.nextString();
+                    emptyRawText = key.equals("text") && text.isEmpty();
+                }
+                changed = written > 0;
+
+            } else if (bit != 0) {
+                styles = reader.nextBoolean() ? styles | bit : styles & ~bit;
+                changed = written > 0;
+
+            } else if (key.equals("color")) {
+                ChatColor value = ChatColor.byJsonColorName(reader.nextString());
+                color = value != null ? value : ChatColor.WHITE;
+                changed = written > 0;
+
+            } else if (key.equals("extra")) {
+                if (written == 0 && text != null && !emptyRawText) {
+                    appendPart(out, color, styles, text);
+                    written = out.length() - start;
+                }
+                extra = true;
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readPart(reader, out, color, styles, false);
+                }
+                reader.endArray();
+
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (!extra) {
+            appendPart(out, color, styles, text);
+            return;
+        }
+        if (changed || (written == 0 && text != null && !emptyRawText)) {
+            StringBuilder part = new StringBuilder();
+            if (text != null && !emptyRawText) {
+                appendPart(part, color, styles, text);
+            }
+            out.replace(start, start + written, part.toString());
+        }
+        if (root && out.length() == start) {
+            appendPart(out, ChatColor.WHITE, 0, "");
+        }
+    }
+
+    private static void appendPart(StringBuilder out, ChatColor color, int styles, String text) {
+        out.append(color);
+        for (ChatColor style : MessagePart.STYLES) {
+            if ((styles & MessagePart.styleBit(style)) != 0) {
+                out.append(style);
+            }
+        }
+        out.append(text);
+    }
+
+}
@@ -1,45 +1,64 @@
 package io.github.mkremins.fanciful;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.ImmutableBiMap;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Internal class: Represents a component of a JSON-serializable {@link FancyMessage}.
  */
 final class MessagePart implements JsonRepresentedObject {
-    static final BiMap<ChatColor, String> STYLES_TO_NAMES;
+    /**
+     * The styles which may be applied to a message part, indexed by their bit in {@link #styles}.
+     */
+    static final ChatColor[] STYLES;
+    private static final String[] STYLE_NAMES;
+    private static final int[] STYLE_BITS = new int[ChatColor.values().length];
     static {
-        ImmutableBiMap.Builder<ChatColor, String> builder = ImmutableBiMap.builder();
+        List<ChatColor> styles = new ArrayList<>();
         for (final ChatColor style : ChatColor.values()) {
-            if (!style.isFormat()) {
-                continue;
+            if (style.isFormat()) {
+                STYLE_BITS[style.ordinal()] = 1 << styles.size();
+                styles.add(style);
             }
+        }
+        STYLES = styles.toArray(new ChatColor[styles.size()]);
+        STYLE_NAMES = new String[STYLES.length];
+        for (int i = 0; i < STYLES.length; i++) {
+            STYLE_NAMES[i] = STYLES[i].getJsonName();
+        }
+    }
 
-            String styleName;
-            switch (style) {
-                case MAGIC:
-                    styleName = "obfuscated";
-                    break;
-                case UNDERLINE:
-                    styleName = "underlined";
-                    break;
-                default:
-                    styleName = style.name().toLowerCase();
-                    break;
-            }
+    /**
+     * Gets the bit representing the specified style within {@link #styles}.
+     *
+     * @param style The style.
+     * @return The bit of the style, or {@code 0} if the value is not a style.
+     */
+    static int styleBit(ChatColor style) {
+        return STYLE_BITS[style.ordinal()];
+    }
 
-            builder.put(style, styleName);
+    /**
+     * Gets the bit representing the style with the specified JSON name within {@link #styles}.
+     *
+     * @param name The JSON property name.
+     * @return The bit of the style, or {@code 0} if the name is not that of a style.
+     */
+    static int styleBit(String name) {
+        for (int i = 0; i < STYLE_NAMES.length; i++) {
+            if (STYLE_NAMES[i].equals(name)) {
+                return 1 << i;
+            }
         }
-        STYLES_TO_NAMES = builder.build();
+        return 0;
     }
 
-    ChatColor color = ChatColor.WHITE;
-    List<ChatColor> styles = new ArrayList<>();
+    ChatColor color = ChatColor.WHITE; // null if the color is left out, so that the client uses its default
+    int styles = 0; // A bit set of the applied styles, see styleBit
     String clickActionName = null;
     String clickActionData = null;
     String hoverActionName = null;
@@ -47,6 +66,9 @@ final class MessagePart implements JsonRepresentedObject {
     TextualComponent text = null;
     String insertionData = null;
     List<JsonRepresentedObject> translationReplacements = new ArrayList<>();
+    boolean shared = false; // Whether this part is referenced by more than one message, and must be cloned before edits
+    int hash = 0; // Cached hash code, 0 if not computed yet
+    String json = null; // Cached JSON fragment, null if not serialized yet
 
     MessagePart(TextualComponent text) {
         this.text = text;
@@ -63,33 +85,147 @@ final class MessagePart implements JsonRepresentedObject {
     public MessagePart copy() {
         MessagePart obj = new MessagePart();
         obj.color = color;
-        obj.styles = new ArrayList<>(styles);
+        obj.styles = styles;
         obj.clickActionName = clickActionName;
         obj.clickActionData = clickActionData;
         obj.hoverActionName = hoverActionName;
-        obj.hoverActionData = hoverActionData.copy();
-        obj.text = text.copy();
+        obj.hoverActionData = hoverActionData == null ? null : hoverActionData.copy();
+        obj.text = text == null ? null : text.copy();
         obj.insertionData = insertionData;
-        translationReplacements = new ArrayList<>(translationReplacements);
+        obj.translationReplacements = new ArrayList<>(translationReplacements.size());
+        for (JsonRepresentedObject replacement : translationReplacements) {
+            obj.translationReplacements.add(replacement.copy());
+        }
         return obj;
     }
 
+    /**
+     * Checks whether this part is displayed with the same format and behaves the same as another part, so that the
+     * text of both parts could be displayed by a single part. A missing color is the same as white, and an event
+     * lacking its action or value is the same as no event, since neither is written.
+     *
+     * @param other The part to compare with.
+     * @return Whether all written fields but the text of both parts are equivalent.
+     */
+    boolean hasSameFormat(MessagePart other) {
+        return displayColor() == other.displayColor()
+                && styles == other.styles
+                && hasClickEvent() == other.hasClickEvent()
+                && (!hasClickEvent() || (clickActionName.equals(other.clickActionName)
+                        && clickActionData.equals(other.clickActionData)))
+                && hasHoverEvent() == other.hasHoverEvent()
+                && (!hasHoverEvent() || (hoverActionName.equals(other.hoverActionName)
+                        && hoverActionData.equals(other.hoverActionData)))
+                && Objects.equals(insertionData, other.insertionData)
+                && translationReplacements.equals(other.translationReplacements);
+    }
+
+    /**
+     * @return Whether this part has a click event which will be written, with both its action and its value.
+     */
+    boolean hasClickEvent() {
+        return clickActionName != null && clickActionData != null;
+    }
+
+    /**
+     * @return Whether this part has a hover event which will be written, with both its action and its value.
+     */
+    boolean hasHoverEvent() {
+        return hoverActionName != null && hoverActionData != null;
+    }
+
+    /**
+     * Discards the cached hash code and JSON fragment of this part. This must be called whenever a field is changed
+     * after the part was hashed or serialized.
+     */
+    void invalidate() {
+        hash = 0;
+        json = null;
+    }
+
+    /**
+     * Gets the JSON representation of this part. The result is cached until the part is next invalidated, so messages
+     * re-exported after an edit only serialize the edited parts again.
+     *
+     * @param buffer The scratch buffer which receives the fragment if it must be serialized again. Its content is
+     *               discarded.
+     * @return The JSON fragment representing this part.
+     */
+    String toJson(StringBuilderWriter buffer) {
+        String result = json;
+        if (result == null) {
+            buffer.reset();
+            try {
+                emit(JsonEmitter.to(buffer.getBuilder()));
+            } catch (IOException e) {
+                // The buffer itself never throws
+                throw new IllegalStateException(e);
+            }
+            result = buffer.toString();
+            json = result;
+        }
+        return result;
+    }
+
+    /**
+     * Compares the content of this part with another object. Two parts are equal if they would be serialized
+     * equivalently, except that a missing color is the same as white, and an incomplete event is the same as none;
+     * nested messages are compared by content as well.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof MessagePart)) {
+            return false;
+        }
+        MessagePart other = (MessagePart) obj;
+        if (hash != 0 && other.hash != 0 && hash != other.hash) {
+            return false;
+        }
+        return Objects.equals(text, other.text) && hasSameFormat(other);
+    }
+
+    /**
+     * The hash code is cached until the part is next edited, see {@link #hash}.
+     */
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if (result == 0) {
+            result = displayColor().hashCode();
+            result = 31 * result + styles;
+            result = 31 * result + Objects.hashCode(text);
+            result = 31 * result + (hasClickEvent() ? 31 * clickActionName.hashCode() + clickActionData.hashCode() : 0);
+            result = 31 * result + (hasHoverEvent() ? 31 * hoverActionName.hashCode() + hoverActionData.hashCode() : 0);
+            result = 31 * result + Objects.hashCode(insertionData);
+            result = 31 * result + translationReplacements.hashCode();
+            hash = result;
+        }
+        return result;
+    }
+
     public void writeJson(JsonWriter json) {
         try {
             json.beginObject();
             text.writeJson(json);
-            json.name("color").value(color.name().toLowerCase());
-            for (final ChatColor style : styles) {
-                json.name(STYLES_TO_NAMES.get(style)).value(true);
+            if (color != null) {
+                json.name("color").value(color.getJsonName());
             }
-            if (clickActionName != null && clickActionData != null) {
+            for (int i = 0; i < STYLE_NAMES.length; i++) {
+                if ((styles & (1 << i)) != 0) {
+                    json.name(STYLE_NAMES[i]).value(true);
+                }
+            }
+            if (hasClickEvent()) {
                 json.name("clickEvent")
                         .beginObject()
                         .name("action").value(clickActionName)
                         .name("value").value(clickActionData)
                         .endObject();
             }
-            if (hoverActionName != null && hoverActionData != null) {
+            if (hasHoverEvent()) {
                 json.name("hoverEvent")
                         .beginObject()
                         .name("action").value(hoverActionName)
@@ -111,4 +247,111 @@ final class MessagePart implements JsonRepresentedObject {
         } catch (IOException ignored) {}
     }
 
+    /**
+     * Writes this part to the specified emitter, reusing the cached JSON fragment if there is one.
+     *
+     * @param emitter The emitter which will receive the part.
+     * @throws IOException If an error occurs writing to the emitter.
+     */
+    void writeJson(JsonEmitter emitter) throws IOException {
+        String result = json;
+        if (result != null) {
+            emitter.raw(result);
+        } else {
+            emit(emitter);
+        }
+    }
+
+    private void emit(JsonEmitter emitter) throws IOException {
+        emitter.punctuation('{');
+        text.writeJson(emitter);
+        if (color != null) {
+            emitter.token(color.jsonToken);
+        }
+        emitStyles(emitter, styles, 0);
+        emitEvents(emitter);
+    }
+
+    /**
+     * Writes this part as a child of a component whose format it inherits, leaving out the color and styles which are
+     * the same as the inherited ones. The cached JSON fragment is not used.
+     *
+     * @param emitter         The emitter which will receive the part.
+     * @param inheritedColor  The color inherited from the parent.
+     * @param inheritedStyles The styles inherited from the parent.
+     * @throws IOException If an error occurs writing to the emitter.
+     */
+    void writeJson(JsonEmitter emitter, ChatColor inheritedColor, int inheritedStyles) throws IOException {
+        emitter.punctuation('{');
+        text.writeJson(emitter);
+        emitFormat(emitter, displayColor(), styles, inheritedColor, inheritedStyles);
+        emitEvents(emitter);
+    }
+
+    /**
+     * @return The color this part is displayed in. A part without a color is displayed in white.
+     */
+    ChatColor displayColor() {
+        return color == null ? ChatColor.WHITE : color;
+    }
+
+    /**
+     * Writes the properties which change an inherited format into the specified format.
+     *
+     * @param emitter         The emitter which will receive the properties.
+     * @param color           The color of the format.
+     * @param styles          The styles of the format.
+     * @param inheritedColor  The inherited color.
+     * @param inheritedStyles The inherited styles.
+     * @throws IOException If an error occurs writing to the emitter.
+     */
+    static void emitFormat(JsonEmitter emitter, ChatColor color, int styles, ChatColor inheritedColor,
+                           int inheritedStyles) throws IOException {
+        if (color != inheritedColor) {
+            emitter.token(color.jsonToken);
+        }
+        emitStyles(emitter, styles, inheritedStyles);
+    }
+
+    private static void emitStyles(JsonEmitter emitter, int styles, int inheritedStyles) throws IOException {
+        int changed = styles ^ inheritedStyles;
+        for (int i = 0; i < STYLES.length; i++) {
+            if ((changed & (1 << i)) != 0) {
+                emitter.token((styles & (1 << i)) != 0 ? STYLES[i].jsonToken : STYLES[i].jsonFalseToken);
+            }
+        }
+    }
+
+    private void emitEvents(JsonEmitter emitter) throws IOException {
+        if (hasClickEvent()) {
+            emitter.token(JsonEmitter.CLICK_EVENT);
+            emitter.string(clickActionName);
+            emitter.token(JsonEmitter.VALUE);
+            emitter.string(clickActionData);
+            emitter.punctuation('}');
+        }
+        if (hasHoverEvent()) {
+            emitter.token(JsonEmitter.HOVER_EVENT);
+            emitter.string(hoverActionName);
+            emitter.token(JsonEmitter.VALUE);
+            emitter.value(hoverActionData);
+            emitter.punctuation('}');
+        }
+        if (insertionData != null) {
+            emitter.token(JsonEmitter.INSERTION);
+            emitter.string(insertionData);
+        }
+        if (translationReplacements.size() > 0 && text != null && TextualComponent.isTranslatableText(text)) {
+            emitter.token(JsonEmitter.WITH);
+            for (int i = 0; i < translationReplacements.size(); i++) {
+                if (i > 0) {
+                    emitter.punctuation(',');
+                }
+                emitter.value(translationReplacements.get(i));
+            }
+            emitter.punctuation(']');
+        }
+        emitter.punctuation('}');
+    }
+
 }
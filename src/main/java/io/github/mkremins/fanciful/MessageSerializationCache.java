@@ -0,0 +1,152 @@
+package io.github.mkremins.fanciful;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+/**
+ * A bounded, concurrent cache of serialized messages. Use it when the same message is sent to many recipients, so that
+ * it is serialized only once per render context instead of once per recipient group.
+ * <p>Entries are keyed on the content of the message, not on its identity, plus a render context such as a locale or
+ * a client protocol version. Messages with equal content therefore share one entry, and modifying a message after it
+ * was cached simply results in a different key. Once the cache is full, the least recently used entries are evicted.
+ * </p>
+ *
+ * @param <C> The type of the render context.
+ */
+public final class MessageSerializationCache<C> {
+
+    /**
+     * Creates a cache which serializes messages with {@link FancyMessage#exportToJson()}, regardless of the render
+     * context.
+     *
+     * @param maximumSize The maximum number of cached entries.
+     * @return The new cache.
+     */
+    public static MessageSerializationCache<Object> create(long maximumSize) {
+        return new MessageSerializationCache<>(maximumSize, (message, context) -> message.exportToJson());
+    }
+
+    private final Cache<Key, String> cache;
+    private final BiFunction<FancyMessage, ? super C, String> renderer;
+
+    /**
+     * Creates a cache with a custom renderer, which receives the render context of each message it serializes.
+     *
+     * @param maximumSize The maximum number of cached entries.
+     * @param renderer    The function which serializes a message for a render context.
+     */
+    public MessageSerializationCache(long maximumSize, BiFunction<FancyMessage, ? super C, String> renderer) {
+        Preconditions.checkArgument(maximumSize > 0, "The maximum size must be positive.");
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+        this.renderer = Preconditions.checkNotNull(renderer, "renderer");
+    }
+
+    /**
+     * Gets the serialized form of the specified message, without a render context.
+     *
+     * @param message The message to serialize.
+     * @return The serialized message.
+     */
+    public String exportToJson(FancyMessage message) {
+        return exportToJson(message, null);
+    }
+
+    /**
+     * Gets the serialized form of the specified message for a render context. The message is only serialized if no
+     * message with equal content has been cached for an equal context.
+     *
+     * @param message The message to serialize.
+     * @param context The render context, which may be {@code null}.
+     * @return The serialized message.
+     */
+    public String exportToJson(FancyMessage message, C context) {
+        Key key = new Key(message, context);
+        String json = cache.getIfPresent(key);
+        if (json == null) {
+            json = renderer.apply(message, context);
+            // The key holds a copy, so later changes to the message cannot corrupt the entry
+            cache.put(new Key(message.copy(), context, key.hash), json);
+        }
+        return json;
+    }
+
+    /**
+     * Discards all cached entries. The statistics are kept.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return The approximate number of cached entries.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return The number of lookups which found a cached entry.
+     */
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * @return The number of lookups which had to serialize the message.
+     */
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * @return The ratio of lookups which found a cached entry, or {@code 1.0} if there were no lookups.
+     */
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    /**
+     * @return The number of entries which were evicted to keep the cache within its maximum size.
+     */
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * Internal class: Keys a cache entry on the content of a message and a render context.
+     */
+    private static final class Key {
+        private final FancyMessage message;
+        private final Object context;
+        private final int hash;
+
+        Key(FancyMessage message, Object context) {
+            this(message, context, 31 * message.hashCode() + Objects.hashCode(context));
+        }
+
+        Key(FancyMessage message, Object context, int hash) {
+            this.message = message;
+            this.context = context;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash && Objects.equals(context, key.context) && message.equals(key.message);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+package io.github.mkremins.fanciful;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a precompiled message with named placeholders, as returned by {@link FancyMessage#template()}.
+ * <p>Placeholders take the form {@code {name}}, where the name consists of letters, digits and underscores. They may
+ * appear in any text of the message: raw text, click data, insertion data and tooltips (including formatted tooltips).
+ * The constant JSON between placeholders is serialized only once, when the template is compiled; rendering merely
+ * escapes the argument values and splices them in.</p>
+ * <p>Templates are immutable and may be shared between threads.</p>
+ */
+public final class MessageTemplate {
+    private final String[] fragments;
+    private final int[] slots;
+    private final String[] names;
+    private final int constantLength;
+
+    private MessageTemplate(String[] fragments, int[] slots, String[] names) {
+        this.fragments = fragments;
+        this.slots = slots;
+        this.names = names;
+        int length = 0;
+        for (String fragment : fragments) {
+            length += fragment.length();
+        }
+        this.constantLength = length;
+    }
+
+    /**
+     * Compiles the specified JSON message into a template. Placeholders are only recognized within JSON string
+     * literals, so the structure of the message is never affected by rendering.
+     *
+     * @param json The JSON representation of a message.
+     * @return The compiled template.
+     */
+    static MessageTemplate compile(String json) {
+        List<String> fragments = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+
+        int last = 0;
+        boolean inString = false;
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (!inString) {
+                inString = c == '"';
+            } else if (c == '\\') {
+                i++; // Skip the escaped character
+            } else if (c == '"') {
+                inString = false;
+            } else if (c == '{') {
+                int end = i + 1;
+                while (end < json.length() && isNameChar(json.charAt(end))) {
+                    end++;
+                }
+                if (end == i + 1 || end == json.length() || json.charAt(end) != '}') {
+                    continue;
+                }
+
+                String name = json.substring(i + 1, end);
+                int slot = names.indexOf(name);
+                if (slot < 0) {
+                    slot = names.size();
+                    names.add(name);
+                }
+                fragments.add(json.substring(last, i));
+                slots.add(slot);
+                last = end + 1;
+                i = end;
+            }
+        }
+        fragments.add(json.substring(last));
+
+        int[] slotArray = new int[slots.size()];
+        for (int i = 0; i < slotArray.length; i++) {
+            slotArray[i] = slots.get(i);
+        }
+        return new MessageTemplate(fragments.toArray(new String[0]), slotArray, names.toArray(new String[0]));
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * @return The names of the placeholders in this template, in order of their first appearance in the message.
+     */
+    public List<String> getPlaceholders() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * Renders the JSON representation of this template with the specified placeholder values.
+     * The string representation of each value is used, via {@link String#valueOf(Object)}.
+     *
+     * @param arguments The values of the placeholders, keyed by placeholder name.
+     * @return The JSON representation of the rendered message.
+     * @throws IllegalArgumentException If a value is missing for any placeholder.
+     */
+    public String render(Map<String, ?> arguments) {
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            if (!arguments.containsKey(names[i])) {
+                throw new IllegalArgumentException("No value specified for placeholder " + names[i]);
+            }
+            values[i] = arguments.get(names[i]);
+        }
+        return renderValues(values);
+    }
+
+    /**
+     * Renders the JSON representation of this template with the specified placeholder values.
+     * The string representation of each value is used, via {@link String#valueOf(Object)}.
+     *
+     * @param values The values of the placeholders, in the order given by {@link #getPlaceholders()}.
+     * @return The JSON representation of the rendered message.
+     * @throws IllegalArgumentException If the number of values does not match the number of placeholders.
+     */
+    public String render(Object... values) {
+        if (values.length != names.length) {
+            throw new IllegalArgumentException("Expected " + names.length + " values but got " + values.length);
+        }
+        return renderValues(values);
+    }
+
+    private String renderValues(Object[] values) {
+        String[] strings = new String[values.length];
+        int length = constantLength;
+        for (int i = 0; i < values.length; i++) {
+            strings[i] = String.valueOf(values[i]);
+            length += strings[i].length();
+        }
+
+        StringBuilder result = new StringBuilder(length + 16);
+        for (int i = 0; i < slots.length; i++) {
+            result.append(fragments[i]);
+            JsonEscaper.appendEscaped(result, strings[slots[i]]);
+        }
+        result.append(fragments[slots.length]);
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,80 @@
+package io.github.mkremins.fanciful;
+
+import java.io.Writer;
+
+/**
+ * Internal class: An unsynchronized writer which appends to a reusable {@link StringBuilder}.
+ * Unlike {@link java.io.StringWriter}, its buffer can be cleared with {@link #reset()} and reused for any number of
+ * serializations, so the buffer only grows until it fits the largest output written to it.
+ */
+final class StringBuilderWriter extends Writer {
+    private final StringBuilder builder;
+
+    StringBuilderWriter() {
+        this(256);
+    }
+
+    StringBuilderWriter(int capacity) {
+        this.builder = new StringBuilder(capacity);
+    }
+
+    /**
+     * @return The builder receiving the written characters.
+     */
+    StringBuilder getBuilder() {
+        return builder;
+    }
+
+    /**
+     * Discards the written characters, keeping the allocated buffer.
+     */
+    void reset() {
+        builder.setLength(0);
+    }
+
+    @Override
+    public void write(int c) {
+        builder.append((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        builder.append(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str) {
+        builder.append(str);
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        builder.append(str, off, off + len);
+    }
+
+    @Override
+    public Writer append(CharSequence csq) {
+        builder.append(csq);
+        return this;
+    }
+
+    @Override
+    public Writer append(char c) {
+        builder.append(c);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+
+}
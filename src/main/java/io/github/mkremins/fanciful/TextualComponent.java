@@ -2,10 +2,11 @@ package io.github.mkremins.fanciful;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -15,22 +16,60 @@ import java.util.Map;
  * <p>Different instances of this class can be created with static constructor methods.</p>
  */
 public abstract class TextualComponent {
-    static TextualComponent deserialize(Map<String, String> map) {
-        if (map.containsKey("key") && map.size() == 2 && map.containsKey("value")) {
+    /**
+     * Reads the value of a textual component directly from a JSON stream. The name of the text property must already
+     * have been consumed from the reader.
+     *
+     * @param key    The JSON key which introduced the value.
+     * @param reader The reader positioned at the value of the text property.
+     * @return The textual component represented by the value.
+     * @throws IOException If an error occurs while reading from the stream.
+     */
+    static TextualComponent deserialize(String key, JsonReader reader) throws IOException {
+        return deserialize(key, reader, null);
+    }
+
+    static TextualComponent deserialize(String key, JsonReader reader, JsonMessageParser parser) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
             // Arbitrary text component
-            return ArbitraryTextTypeComponent.deserialize(map);
-        } else if (map.size() >= 2 && map.containsKey("key") && !map.containsKey("value") /* It contains keys that START WITH value */) {
-            // Complex JSON object
-            return ComplexTextTypeComponent.deserialize(map);
+            return new ArbitraryTextTypeComponent(key, parser != null ? parser.string(reader) : reader.nextString());
         }
 
-        return null;
+        // Complex JSON object
+        ImmutableMap.Builder<String, String> values = ImmutableMap.builder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            values.put(reader.nextName(), parser != null ? parser.string(reader) : reader.nextString());
+        }
+        reader.endObject();
+        return new ComplexTextTypeComponent(key, values.build());
+    }
+
+    static TextualComponent arbitrary(String key, String value) {
+        return new ArbitraryTextTypeComponent(key, value);
+    }
+
+    static TextualComponent complex(String key, Map<String, String> value) {
+        return new ComplexTextTypeComponent(key, value);
     }
 
     static boolean isTextKey(String key) {
         return key.equals("translate") || key.equals("text") || key.equals("score") || key.equals("selector");
     }
 
+    /**
+     * Gets the value of a raw text component, as created by {@link #rawText(String)}.
+     *
+     * @param component The component, which may be {@code null}.
+     * @return The text of the component, or {@code null} if it is not a raw text component.
+     */
+    static String getRawText(TextualComponent component) {
+        if (component instanceof ArbitraryTextTypeComponent && component.getKey().equals("text")) {
+            return component.getReadableString();
+        }
+        return null;
+    }
+
     static boolean isTranslatableText(TextualComponent component) {
         return component instanceof ComplexTextTypeComponent && component.getKey().equals("translate");
     }
@@ -135,15 +174,41 @@ public abstract class TextualComponent {
      */
     public abstract void writeJson(JsonWriter writer) throws IOException;
 
+    /**
+     * Writes the JSON name and value of this component to the specified emitter. Component types unknown to the
+     * emitter are written through {@link #writeJson(JsonWriter)}.
+     *
+     * @param emitter The emitter which will receive the component.
+     * @throws IOException If an error occurs writing to the emitter.
+     */
+    void writeJson(JsonEmitter emitter) throws IOException {
+        StringBuilderWriter buffer = new StringBuilderWriter();
+        JsonWriter writer = new JsonWriter(buffer);
+        writer.beginObject();
+        writeJson(writer);
+        writer.endObject();
+        writer.close();
+        // Strip the braces of the enclosing object, leaving only the name and value
+        StringBuilder json = buffer.getBuilder();
+        emitter.raw(json.substring(1, json.length() - 1));
+    }
+
+    /**
+     * Writes this component to the specified binary encoder. Component types unknown to the encoder are stored as
+     * JSON.
+     *
+     * @param encoder The encoder which will receive the component.
+     * @throws IOException If an error occurs writing to the encoder.
+     */
+    void writeBinary(BinaryCodec.Encoder encoder) throws IOException {
+        encoder.jsonText(this);
+    }
+
     /**
      * Internal class used to represent all types of text components.
      * Exception validating done is on keys and values.
      */
     private static final class ArbitraryTextTypeComponent extends TextualComponent {
-        public static ArbitraryTextTypeComponent deserialize(Map<String, String> map) {
-            return new ArbitraryTextTypeComponent(map.get("key"), map.get("value"));
-        }
-
         private String key;
         private String value;
 
@@ -181,10 +246,39 @@ public abstract class TextualComponent {
             writer.name(getKey()).value(getValue());
         }
 
+        @Override
+        void writeJson(JsonEmitter emitter) throws IOException {
+            if (key.equals("text")) {
+                emitter.token(JsonEmitter.TEXT);
+            } else {
+                emitter.name(key);
+            }
+            emitter.string(value);
+        }
+
+        @Override
+        void writeBinary(BinaryCodec.Encoder encoder) throws IOException {
+            encoder.arbitraryText(key, value);
+        }
+
         @Override
         public String getReadableString() {
             return getValue();
         }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ArbitraryTextTypeComponent)) {
+                return false;
+            }
+            ArbitraryTextTypeComponent component = (ArbitraryTextTypeComponent) other;
+            return key.equals(component.key) && value.equals(component.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + value.hashCode();
+        }
     }
 
     /**
@@ -192,20 +286,6 @@ public abstract class TextualComponent {
      * Exception validating done is on keys and values.
      */
     private static final class ComplexTextTypeComponent extends TextualComponent {
-        public static ComplexTextTypeComponent deserialize(Map<String, String> map) {
-            String key = null;
-            Map<String, String> values = new HashMap<String, String>();
-            for (Map.Entry<String, String> valEntry : map.entrySet()) {
-                if (valEntry.getKey().equals("key")) {
-                    key = valEntry.getValue();
-                } else if (valEntry.getKey().startsWith("value.")) {
-                    // Strips out the value prefix
-                    values.put(valEntry.getKey().substring(6), valEntry.getValue());
-                }
-            }
-            return new ComplexTextTypeComponent(key, values);
-        }
-
         private String key;
         private Map<String, String> value;
 
@@ -248,9 +328,44 @@ public abstract class TextualComponent {
             writer.endObject();
         }
 
+        @Override
+        void writeJson(JsonEmitter emitter) throws IOException {
+            emitter.name(key);
+            emitter.punctuation('{');
+            boolean first = true;
+            for (Map.Entry<String, String> jsonPair : value.entrySet()) {
+                if (!first) {
+                    emitter.punctuation(',');
+                }
+                first = false;
+                emitter.name(jsonPair.getKey());
+                emitter.string(jsonPair.getValue());
+            }
+            emitter.punctuation('}');
+        }
+
+        @Override
+        void writeBinary(BinaryCodec.Encoder encoder) throws IOException {
+            encoder.complexText(key, value);
+        }
+
         @Override
         public String getReadableString() {
             return getKey();
         }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ComplexTextTypeComponent)) {
+                return false;
+            }
+            ComplexTextTypeComponent component = (ComplexTextTypeComponent) other;
+            return key.equals(component.key) && value.equals(component.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + value.hashCode();
+        }
     }
 }
@@ -0,0 +1,195 @@
+package io.github.mkremins.fanciful;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+/**
+ * Internal class: A writer which encodes characters as UTF-8 straight into a byte sink.
+ * No intermediate {@code String} or {@code char[]} copy of the written text is made.
+ * Unpaired surrogates are encoded as {@code '?'}, matching {@link String#getBytes(java.nio.charset.Charset)}.
+ */
+abstract class Utf8Writer extends Writer {
+
+    /**
+     * Creates a writer which puts the encoded bytes into the specified buffer, starting at its current position.
+     * A {@link java.nio.BufferOverflowException} is thrown if the buffer runs out of space.
+     *
+     * @param buffer The buffer which will receive the encoded bytes.
+     * @return The new writer.
+     */
+    static Utf8Writer to(ByteBuffer buffer) {
+        return new BufferWriter(buffer);
+    }
+
+    /**
+     * Creates a writer which writes the encoded bytes to the specified stream.
+     * The bytes are buffered internally until the writer is flushed or closed.
+     *
+     * @param out The stream which will receive the encoded bytes.
+     * @return The new writer.
+     */
+    static Utf8Writer to(OutputStream out) {
+        return new StreamWriter(out);
+    }
+
+    private char highSurrogate;
+
+    /**
+     * Writes a single encoded byte to the underlying sink.
+     *
+     * @param b The byte to write.
+     * @throws IOException If an error occurs writing to the sink.
+     */
+    abstract void put(int b) throws IOException;
+
+    /**
+     * Writes already encoded bytes to the underlying sink.
+     *
+     * @param bytes The bytes to write.
+     * @throws IOException If an error occurs writing to the sink.
+     */
+    void put(byte[] bytes) throws IOException {
+        for (byte b : bytes) {
+            put(b);
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        encode((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off, end = off + len; i < end; i++) {
+            encode(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = off, end = off + len; i < end; i++) {
+            encode(str.charAt(i));
+        }
+    }
+
+    @Override
+    public Writer append(CharSequence csq) throws IOException {
+        for (int i = 0, end = csq.length(); i < end; i++) {
+            encode(csq.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            put('?');
+        }
+        flush();
+    }
+
+    private void encode(char c) throws IOException {
+        if (c < 0x80 && highSurrogate == 0) {
+            put(c);
+            return;
+        }
+
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                put(0xF0 | (codePoint >> 18));
+                put(0x80 | ((codePoint >> 12) & 0x3F));
+                put(0x80 | ((codePoint >> 6) & 0x3F));
+                put(0x80 | (codePoint & 0x3F));
+                return;
+            }
+            put('?');
+        }
+
+        if (c < 0x80) {
+            put(c);
+        } else if (c < 0x800) {
+            put(0xC0 | (c >> 6));
+            put(0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            put('?');
+        } else {
+            put(0xE0 | (c >> 12));
+            put(0x80 | ((c >> 6) & 0x3F));
+            put(0x80 | (c & 0x3F));
+        }
+    }
+
+    private static final class BufferWriter extends Utf8Writer {
+        private final ByteBuffer buffer;
+
+        BufferWriter(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        void put(int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        void put(byte[] bytes) {
+            buffer.put(bytes);
+        }
+    }
+
+    private static final class StreamWriter extends Utf8Writer {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[1024];
+        private int count;
+
+        StreamWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        void put(int b) throws IOException {
+            if (count == buffer.length) {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        void put(byte[] bytes) throws IOException {
+            if (count + bytes.length > buffer.length) {
+                out.write(buffer, 0, count);
+                count = 0;
+                if (bytes.length > buffer.length) {
+                    out.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, count, bytes.length);
+            count += bytes.length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+            out.flush();
+        }
+    }
+
+}